@@ -0,0 +1,129 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.github.fanfever.fever.item.User;
+import com.github.fanfever.fever.reader.JdbcReaderFactory;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取整张user表: 原配置(page/fetch 10) vs keyset分页 vs 复合键keyset分页 vs 流式cursor，分数为每秒行数
+ * <p>
+ * 默认使用内存H2，-Dbenchmark.url/-Dbenchmark.username/-Dbenchmark.password指向本地MySQL时，
+ * cursor的fetchSize应为{@link JdbcReaderFactory#STREAMING_FETCH_SIZE}(-Dbenchmark.cursorFetchSize=-2147483648)。
+ * 各模式复用同一个物理连接，分页模式的分数不包含每页建立连接的开销
+ * <pre>java -jar target/benchmarks.jar ReaderBenchmark -rf json</pre>
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark {
+
+    private static final int ROWS = 1000000;
+
+    public enum ReaderMode {
+        LEGACY_PAGING, PAGING, COMPOSITE_PAGING, CURSOR
+    }
+
+    @Param({"LEGACY_PAGING", "PAGING", "COMPOSITE_PAGING", "CURSOR"})
+    public ReaderMode mode;
+
+    private SingleConnectionDataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataSource = new SingleConnectionDataSource(System.getProperty("benchmark.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1"),
+                System.getProperty("benchmark.username", "sa"), System.getProperty("benchmark.password", ""), true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user (id INT PRIMARY KEY, sex TINYINT, username VARCHAR(32), create_time TIMESTAMP, version INT)");
+        if (0 != jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user", Integer.class)) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE INDEX idx_user_sex_id ON user (sex, id)");
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> batch = Lists.newArrayListWithCapacity(10000);
+        for (int id = 1; id <= ROWS; id++) {
+            batch.add(new Object[]{id, id % 2 + 1, "user-" + id, now, 1});
+            if (batch.size() == 10000) {
+                jdbcTemplate.batchUpdate("INSERT INTO user (id, sex, username, create_time, version) VALUES (?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void read(Blackhole blackhole) throws Exception {
+        ItemStreamReader<User> reader = reader();
+        reader.open(new ExecutionContext());
+        try {
+            for (User user = reader.read(); null != user; user = reader.read()) {
+                blackhole.consume(user);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private ItemStreamReader<User> reader() throws Exception {
+        JdbcReaderFactory<User> factory = JdbcReaderFactory.of(dataSource, (rs, rowNum) -> User.build(rs.getInt("id"), rs.getString("username"),
+                rs.getInt("sex"), rs.getTimestamp("create_time").getTime(), rs.getInt("version")))
+                .select("id, username, sex, create_time, version").from("user");
+        switch (mode) {
+            case LEGACY_PAGING:
+                return init(factory.sortKey("id", Order.ASCENDING).pageSize(10).fetchSize(10).paging());
+            case PAGING:
+                return init(factory.sortKey("id", Order.ASCENDING).pageSize(1000).fetchSize(1000).paging());
+            case COMPOSITE_PAGING:
+                return init(factory.sortKey("sex", Order.ASCENDING).sortKey("id", Order.ASCENDING).pageSize(1000).fetchSize(1000).paging());
+            case CURSOR:
+                JdbcCursorItemReader<User> reader = factory.sortKey("id", Order.ASCENDING).fetchSize(Integer.getInteger("benchmark.cursorFetchSize", 1000)).cursor();
+                reader.afterPropertiesSet();
+                return reader;
+            default:
+                throw new AssertionError("mode is not exists!");
+        }
+    }
+
+    private static JdbcPagingItemReader<User> init(JdbcPagingItemReader<User> reader) throws Exception {
+        reader.afterPropertiesSet();
+        return reader;
+    }
+
+}
@@ -9,6 +9,8 @@ DROP TABLE batch_step_execution;
 DROP TABLE batch_step_execution_context;
 DROP TABLE batch_step_execution_seq;
 DROP TABLE IF EXISTS user;
+DROP TABLE IF EXISTS INT_CHANNEL_MESSAGE;
+DROP TABLE IF EXISTS batch_dead_letter;
 
 CREATE TABLE user
 (
@@ -26,3 +28,32 @@ INSERT INTO user VALUES (3, 1, 'dog', NOW(), 1);
 INSERT INTO user VALUES (4, 1, 'parda', NOW(), 1);
 INSERT INTO user VALUES (5, 2, 'bid', NOW(), 1);
 INSERT INTO user VALUES (6, 2, 'other', NOW(), 1);
+
+CREATE TABLE INT_CHANNEL_MESSAGE
+(
+	MESSAGE_ID char(36) NOT NULL,
+	GROUP_KEY char(36) NOT NULL,
+	CREATED_DATE bigint NOT NULL,
+	MESSAGE_PRIORITY bigint,
+	MESSAGE_SEQUENCE bigint NOT NULL AUTO_INCREMENT UNIQUE,
+	MESSAGE_BYTES blob,
+	REGION varchar(100) NOT NULL,
+	PRIMARY KEY (GROUP_KEY, MESSAGE_ID, REGION)
+) ENGINE = InnoDB COMMENT = 'remote partition分区请求队列';
+
+CREATE INDEX INT_CHANNEL_MSG_DELETE_IDX ON INT_CHANNEL_MESSAGE (REGION, GROUP_KEY, MESSAGE_ID);
+
+CREATE TABLE batch_dead_letter
+(
+	id bigint NOT NULL AUTO_INCREMENT,
+	job_name varchar(100) COMMENT 'job名称',
+	step_name varchar(100) COMMENT 'step名称',
+	step_execution_id bigint COMMENT 'step execution id',
+	phase varchar(16) NOT NULL COMMENT '阶段:READ/PROCESS/WRITE',
+	item text COMMENT 'item json，READ阶段为空',
+	exception_class varchar(255) NOT NULL COMMENT '异常类',
+	exception_message varchar(1000) COMMENT '异常信息',
+	create_time datetime COMMENT '创建时间',
+	PRIMARY KEY (id),
+	KEY idx_step_execution_id (step_execution_id)
+) ENGINE = InnoDB COMMENT = '跳过的item，用于重放';
@@ -0,0 +1,38 @@
+package com.github.fanfever.fever.config;
+
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * processor远程调用使用的RestTemplate，连接池大小与processor最大在途数一致
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Configuration
+public class RestTemplateConfiguration {
+
+	@Value("${fever.batch.remote.max-in-flight:16}")
+	private int maxInFlight;
+
+	@Value("${fever.batch.remote.connect-timeout-millis:1000}")
+	private int connectTimeoutMillis;
+
+	@Value("${fever.batch.remote.read-timeout-millis:5000}")
+	private int readTimeoutMillis;
+
+	@Bean
+	public RestTemplate restTemplate() {
+		HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(
+				HttpClientBuilder.create().setMaxConnPerRoute(maxInFlight).setMaxConnTotal(maxInFlight * 2).build());
+		requestFactory.setConnectTimeout(connectTimeoutMillis);
+		requestFactory.setConnectionRequestTimeout(connectTimeoutMillis);
+		requestFactory.setReadTimeout(readTimeoutMillis);
+		return new RestTemplate(requestFactory);
+	}
+}
@@ -0,0 +1,179 @@
+package com.github.fanfever.fever.config.job;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.step.StepLocator;
+import org.springframework.batch.integration.partition.BeanFactoryStepLocator;
+import org.springframework.batch.integration.partition.MessageChannelPartitionHandler;
+import org.springframework.batch.integration.partition.StepExecutionRequestHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.integration.channel.NullChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.integration.endpoint.PollingConsumer;
+import org.springframework.integration.handler.ServiceActivatingHandler;
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.integration.jdbc.store.channel.MySqlChannelMessageStoreQueryProvider;
+import org.springframework.integration.store.MessageGroupQueue;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.support.PeriodicTrigger;
+
+import com.github.fanfever.fever.listener.JobCompletionNotificationListener;
+import com.github.fanfever.fever.partition.ColumnRangePartitioner;
+
+/**
+ * simplePartitionJob的跨节点版本
+ * 
+ * manager: 按id范围分区后将{@link org.springframework.batch.integration.partition.StepExecutionRequest}
+ * 发送到partitionRequests队列，通过job repository轮询各分区结果。
+ * worker: 从队列拉取分区并执行simplePartitionWorkerStep，结果写入job repository，不需要回复。
+ * 
+ * 队列默认使用JDBC(INT_CHANNEL_MESSAGE表，见clear.sql)，所有节点共享同一数据库即可，增减worker节点不需要修改job；
+ * channel=memory时为进程内队列，manager与worker需在同一JVM中(本地调试)。
+ * worker在执行中退出时该分区停留在STARTED，manager超时后job失败，重新启动job只重跑未完成的分区
+ * 
+ * <pre>
+ * manager: java -jar fever-batch.jar --spring.batch.job.names=remotePartitionJob
+ * worker:  java -jar fever-batch.jar --spring.batch.job.enabled=false --fever.batch.remote-partition.worker.enabled=true
+ * </pre>
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Configuration
+public class RemotePartitionJobConfiguration extends BaseJobConfiguration {
+
+	private static final String WORKER_STEP_NAME = "simplePartitionWorkerStep";
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private JobExplorer jobExplorer;
+
+	@Autowired
+	private ColumnRangePartitioner simplePartitioner;
+
+	@Value("${fever.batch.remote-partition.channel:jdbc}")
+	private String channel;
+
+	@Value("${fever.batch.remote-partition.grid-size:8}")
+	private int gridSize;
+
+	@Value("${fever.batch.remote-partition.timeout-millis:3600000}")
+	private long timeoutMillis;
+
+	@Value("${fever.batch.remote-partition.poll-interval-millis:1000}")
+	private long pollIntervalMillis;
+
+	@Value("${fever.batch.remote-partition.worker.enabled:false}")
+	private boolean workerEnabled;
+
+	@Value("${fever.batch.remote-partition.worker.concurrency:4}")
+	private int workerConcurrency;
+
+	@Bean
+	public Job remotePartitionJob() throws Exception {
+		return jobBuilderFactory.get("remotePartitionJob").incrementer(new RunIdIncrementer())
+				.listener(new JobCompletionNotificationListener()).start(remotePartitionStep()).build();
+	}
+
+	@Bean
+	public Step remotePartitionStep() throws Exception {
+		return stepBuilderFactory.get("remotePartitionStep").partitioner(WORKER_STEP_NAME, simplePartitioner)
+				.partitionHandler(remotePartitionHandler()).build();
+	}
+
+	@Bean
+	public MessageChannelPartitionHandler remotePartitionHandler() throws Exception {
+		MessagingTemplate messagingTemplate = new MessagingTemplate();
+		messagingTemplate.setDefaultChannel(partitionRequests());
+		MessageChannelPartitionHandler partitionHandler = new MessageChannelPartitionHandler();
+		partitionHandler.setMessagingOperations(messagingTemplate);
+		partitionHandler.setStepName(WORKER_STEP_NAME);
+		partitionHandler.setGridSize(gridSize);
+		partitionHandler.setJobExplorer(jobExplorer);
+		partitionHandler.setPollRepositoryForResults(true);
+		partitionHandler.setPollInterval(pollIntervalMillis);
+		partitionHandler.setTimeout(timeoutMillis);
+		return partitionHandler;
+	}
+
+	/**
+	 * 分区请求队列，channel=jdbc时持久化在INT_CHANNEL_MESSAGE表中
+	 */
+	@Bean
+	public QueueChannel partitionRequests() {
+		if ("memory".equals(channel)) {
+			return new QueueChannel();
+		}
+		JdbcChannelMessageStore messageStore = new JdbcChannelMessageStore(dataSource);
+		messageStore.setChannelMessageStoreQueryProvider(new MySqlChannelMessageStoreQueryProvider());
+		messageStore.setRegion("fever-batch");
+		return new QueueChannel(new MessageGroupQueue(messageStore, "partitionRequests"));
+	}
+
+	@Bean
+	public StepExecutionRequestHandler stepExecutionRequestHandler() {
+		StepExecutionRequestHandler stepExecutionRequestHandler = new StepExecutionRequestHandler();
+		stepExecutionRequestHandler.setJobExplorer(jobExplorer);
+		stepExecutionRequestHandler.setStepLocator(stepLocator());
+		return stepExecutionRequestHandler;
+	}
+
+	@Bean
+	public StepLocator stepLocator() {
+		return new BeanFactoryStepLocator();
+	}
+
+	/**
+	 * 执行分区后不回复，结果由manager从job repository读取
+	 */
+	@Bean
+	public ServiceActivatingHandler stepExecutionRequestActivator() {
+		ServiceActivatingHandler serviceActivatingHandler = new ServiceActivatingHandler(stepExecutionRequestHandler(),
+				"handle");
+		serviceActivatingHandler.setOutputChannel(new NullChannel());
+		return serviceActivatingHandler;
+	}
+
+	/**
+	 * worker: 每次拉取一个分区，只在worker.enabled时启动
+	 */
+	@Bean
+	public PollingConsumer partitionRequestConsumer() {
+		PollingConsumer pollingConsumer = new PollingConsumer(partitionRequests(), stepExecutionRequestActivator());
+		pollingConsumer.setTrigger(new PeriodicTrigger(pollIntervalMillis));
+		pollingConsumer.setTaskExecutor(workerTaskExecutor());
+		pollingConsumer.setMaxMessagesPerPoll(1);
+		pollingConsumer.setAutoStartup(workerEnabled);
+		return pollingConsumer;
+	}
+
+	/**
+	 * 每个节点最多同时执行workerConcurrency个分区；线程都忙时丢弃本次拉取任务(尚未取消息)，
+	 * 分区留在队列中由空闲节点或下一次拉取处理，poller的调度线程不会执行分区
+	 */
+	@Bean
+	public TaskExecutor workerTaskExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(workerConcurrency);
+		taskExecutor.setMaxPoolSize(workerConcurrency);
+		taskExecutor.setQueueCapacity(0);
+		taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+		taskExecutor.setThreadNamePrefix("partition-worker-");
+		return taskExecutor;
+	}
+
+}
@@ -2,6 +2,7 @@ package com.github.fanfever.fever.config.job;
 
 import java.util.Date;
 
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.JobParametersInvalidException;
@@ -11,7 +12,6 @@ import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
 import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
 import org.springframework.batch.core.repository.JobRestartException;
-import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -21,6 +21,8 @@ import org.springframework.stereotype.Component;
 import com.github.fanfever.fever.config.process.ScheduleProcessorConfiguration.ScheduleProcessor;
 import com.github.fanfever.fever.item.User;
 import com.github.fanfever.fever.listener.JobCompletionNotificationListener;
+import com.github.fanfever.fever.policy.AdaptiveCompletionPolicy;
+import com.github.fanfever.fever.writer.MultiRowItemWriter;
 
 /**
  * @author fanfever
@@ -41,9 +43,12 @@ public class ScheduleJobConfiguration extends BaseJobConfiguration {
 	@Autowired
 	private ScheduleProcessor processor;
 
+	@Autowired
+	private AdaptiveCompletionPolicy completionPolicy;
+
 	@Autowired
 	@Qualifier("scheduleWriter")
-	private JdbcBatchItemWriter<User> writer;
+	private MultiRowItemWriter<User> writer;
 
 //	@Scheduled(fixedDelay = 9999)
 	public void run() throws JobExecutionAlreadyRunningException, JobRestartException,
@@ -60,7 +65,8 @@ public class ScheduleJobConfiguration extends BaseJobConfiguration {
 
 	private Step scheduleJobStep1() {
 		return stepBuilderFactory.get("simpleJobStep1").listener(new JobCompletionNotificationListener())
-				.<User, User>chunk(10).reader(reader).processor(processor).writer(writer).build();
+				.<User, User>chunk(completionPolicy).reader(reader).processor(processor).writer(writer)
+				.listener((ChunkListener) completionPolicy).build();
 	}
 
 }
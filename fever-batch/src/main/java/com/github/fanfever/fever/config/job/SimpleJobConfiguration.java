@@ -1,9 +1,13 @@
 package com.github.fanfever.fever.config.job;
 
+import java.util.concurrent.Future;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemReadListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -13,8 +17,12 @@ import org.springframework.context.annotation.Configuration;
 import com.github.fanfever.fever.config.process.SimpleProcessorConfiguration.SimpleProcessor;
 import com.github.fanfever.fever.item.User;
 import com.github.fanfever.fever.listener.JobCompletionNotificationListener;
+import com.github.fanfever.fever.listener.SkipRetryRecorder;
 import com.github.fanfever.fever.listener.StepRetryListener;
 import com.github.fanfever.fever.listener.StepSkipListener;
+import com.github.fanfever.fever.policy.AdaptiveCompletionPolicy;
+import com.github.fanfever.fever.processor.AsyncItemProcessor;
+import com.github.fanfever.fever.processor.AsyncItemWriter;
 
 /**
  * @author fanfever
@@ -30,11 +38,21 @@ public class SimpleJobConfiguration extends BaseJobConfiguration {
 	private JdbcPagingItemReader<User> reader;
 
 	@Autowired
-	private SimpleProcessor processor;
+	private SimpleProcessor simpleProcessor;
+
+	@Autowired
+	private AdaptiveCompletionPolicy completionPolicy;
+
+	@Autowired
+	private SkipRetryRecorder skipRetryRecorder;
+
+	@Autowired
+	@Qualifier("asyncSimpleProcessor")
+	private AsyncItemProcessor<User, User> processor;
 
 	@Autowired
-	@Qualifier("simpleWriter")
-	private JdbcBatchItemWriter<User> writer;
+	@Qualifier("asyncSimpleWriter")
+	private AsyncItemWriter<User> writer;
 
 	@Bean
 	public Job simpleJob() {
@@ -44,9 +62,11 @@ public class SimpleJobConfiguration extends BaseJobConfiguration {
 
 	@Bean
 	public Step simpleJobStep1() {
-		return stepBuilderFactory.get("simpleJobStep1").<User, User>chunk(10).faultTolerant().retry(Exception.class)
-				.retryLimit(2).listener(new StepRetryListener()).skip(Exception.class).skipLimit(100)
-				.listener(new StepSkipListener<>()).reader(reader).processor(processor).writer(writer).build();
+		return stepBuilderFactory.get("simpleJobStep1").<User, Future<User>>chunk(completionPolicy).faultTolerant()
+				.retry(Exception.class).retryLimit(2).listener(new StepRetryListener(skipRetryRecorder)).skip(Exception.class).skipLimit(100)
+				.listener(new StepSkipListener<>(skipRetryRecorder)).reader(reader).listener((ItemReadListener<User>) simpleProcessor)
+				.processor(processor).writer(writer).listener((ChunkListener) completionPolicy)
+				.listener((StepExecutionListener) skipRetryRecorder).build();
 	}
 
 }
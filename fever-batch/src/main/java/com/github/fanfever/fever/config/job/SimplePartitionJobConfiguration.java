@@ -0,0 +1,110 @@
+package com.github.fanfever.fever.config.job;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.github.fanfever.fever.config.process.SimpleProcessorConfiguration.SimpleProcessor;
+import com.github.fanfever.fever.item.User;
+import com.github.fanfever.fever.listener.JobCompletionNotificationListener;
+import com.github.fanfever.fever.listener.SkipRetryRecorder;
+import com.github.fanfever.fever.listener.StepRetryListener;
+import com.github.fanfever.fever.listener.StepSkipListener;
+import com.github.fanfever.fever.partition.ColumnRangePartitioner;
+import com.github.fanfever.fever.writer.MultiRowItemWriter;
+
+/**
+ * simpleJob的分区版本
+ * 
+ * user表按id范围分为gridSize个分区，由poolSize个线程执行，每个分区的进度单独保存在job repository中；
+ * 失败后以相同参数重新启动时只执行未完成的分区
+ * 
+ * <pre>
+ * java -jar fever-batch.jar --spring.batch.job.names=simplePartitionJob
+ * </pre>
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Configuration
+public class SimplePartitionJobConfiguration extends BaseJobConfiguration {
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	@Qualifier("simplePartitionReader")
+	private JdbcPagingItemReader<User> reader;
+
+	@Autowired
+	private SimpleProcessor processor;
+
+	@Autowired
+	@Qualifier("simpleWriter")
+	private MultiRowItemWriter<User> writer;
+
+	@Autowired
+	private SkipRetryRecorder skipRetryRecorder;
+
+	@Value("${fever.batch.simple-partition.grid-size:8}")
+	private int gridSize;
+
+	@Value("${fever.batch.simple-partition.pool-size:4}")
+	private int poolSize;
+
+	@Value("${fever.batch.simple-partition.chunk-size:10}")
+	private int chunkSize;
+
+	@Bean
+	public Job simplePartitionJob() {
+		return jobBuilderFactory.get("simplePartitionJob").incrementer(new RunIdIncrementer())
+				.listener(new JobCompletionNotificationListener()).start(simplePartitionStep()).build();
+	}
+
+	@Bean
+	public Step simplePartitionStep() {
+		return stepBuilderFactory.get("simplePartitionStep")
+				.partitioner("simplePartitionWorkerStep", simplePartitioner()).step(simplePartitionWorkerStep())
+				.gridSize(gridSize).taskExecutor(simplePartitionTaskExecutor()).build();
+	}
+
+	@Bean
+	public Step simplePartitionWorkerStep() {
+		return stepBuilderFactory.get("simplePartitionWorkerStep").<User, User>chunk(chunkSize).faultTolerant()
+				.retry(Exception.class).retryLimit(2).listener(new StepRetryListener(skipRetryRecorder)).skip(Exception.class)
+				.skipLimit(100).listener(new StepSkipListener<>(skipRetryRecorder)).reader(reader).processor(processor).writer(writer)
+				.listener((StepExecutionListener) skipRetryRecorder).build();
+	}
+
+	@Bean
+	public ColumnRangePartitioner simplePartitioner() {
+		ColumnRangePartitioner partitioner = new ColumnRangePartitioner();
+		partitioner.setDataSource(dataSource);
+		partitioner.setTable("user");
+		partitioner.setColumn("id");
+		partitioner.setWhereClause("sex = 1");
+		return partitioner;
+	}
+
+	@Bean
+	public TaskExecutor simplePartitionTaskExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(poolSize);
+		taskExecutor.setMaxPoolSize(poolSize);
+		taskExecutor.setThreadNamePrefix("simple-partition-");
+		return taskExecutor;
+	}
+
+}
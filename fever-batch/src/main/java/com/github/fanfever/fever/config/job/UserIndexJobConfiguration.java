@@ -0,0 +1,93 @@
+package com.github.fanfever.fever.config.job;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.github.fanfever.fever.item.User;
+import com.github.fanfever.fever.listener.JobCompletionNotificationListener;
+import com.github.fanfever.fever.partition.ColumnRangePartitioner;
+import com.github.fanfever.fever.writer.ElasticsearchItemWriter;
+
+/**
+ * user表全量写入elasticsearch
+ * 
+ * 按id范围分为gridSize个分区并发执行；失败后以相同参数重新启动，已完成的分区不再执行，
+ * 未完成的分区从最后提交的chunk之后继续
+ * 
+ * <pre>
+ * java -jar fever-batch.jar --spring.batch.job.names=userIndexJob
+ * </pre>
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Configuration
+public class UserIndexJobConfiguration extends BaseJobConfiguration {
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	@Qualifier("userIndexReader")
+	private JdbcPagingItemReader<User> reader;
+
+	@Autowired
+	@Qualifier("userIndexWriter")
+	private ElasticsearchItemWriter<User> writer;
+
+	@Value("${fever.batch.user-index.grid-size:4}")
+	private int gridSize;
+
+	@Value("${fever.batch.user-index.chunk-size:1000}")
+	private int chunkSize;
+
+	@Bean
+	public Job userIndexJob() {
+		return jobBuilderFactory.get("userIndexJob").incrementer(new RunIdIncrementer())
+				.listener(new JobCompletionNotificationListener()).start(userIndexStep()).build();
+	}
+
+	@Bean
+	public Step userIndexStep() {
+		return stepBuilderFactory.get("userIndexStep").partitioner("userIndexWorkerStep", userIndexPartitioner())
+				.step(userIndexWorkerStep()).gridSize(gridSize).taskExecutor(userIndexTaskExecutor()).build();
+	}
+
+	@Bean
+	public Step userIndexWorkerStep() {
+		return stepBuilderFactory.get("userIndexWorkerStep").<User, User>chunk(chunkSize).reader(reader)
+				.writer(writer).faultTolerant().retry(WriteFailedException.class).retryLimit(3).build();
+	}
+
+	@Bean
+	public ColumnRangePartitioner userIndexPartitioner() {
+		ColumnRangePartitioner partitioner = new ColumnRangePartitioner();
+		partitioner.setDataSource(dataSource);
+		partitioner.setTable("user");
+		partitioner.setColumn("id");
+		return partitioner;
+	}
+
+	@Bean
+	public TaskExecutor userIndexTaskExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(gridSize);
+		taskExecutor.setMaxPoolSize(gridSize);
+		taskExecutor.setThreadNamePrefix("user-index-");
+		return taskExecutor;
+	}
+
+}
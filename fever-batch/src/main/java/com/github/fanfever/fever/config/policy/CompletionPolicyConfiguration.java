@@ -0,0 +1,43 @@
+package com.github.fanfever.fever.config.policy;
+
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.fanfever.fever.policy.AdaptiveCompletionPolicy;
+
+/**
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Configuration
+public class CompletionPolicyConfiguration {
+
+	@Autowired(required = false)
+	private GaugeService gaugeService;
+
+	@Value("${fever.batch.chunk.target-millis:500}")
+	private long targetMillis;
+
+	@Value("${fever.batch.chunk.initial-size:10}")
+	private int initialSize;
+
+	@Value("${fever.batch.chunk.min-size:10}")
+	private int minSize;
+
+	@Value("${fever.batch.chunk.max-size:5000}")
+	private int maxSize;
+
+	@Bean
+	@StepScope
+	public AdaptiveCompletionPolicy adaptiveCompletionPolicy() {
+		AdaptiveCompletionPolicy completionPolicy = new AdaptiveCompletionPolicy(targetMillis, initialSize, minSize, maxSize);
+		completionPolicy.setGaugeService(gaugeService);
+		return completionPolicy;
+	}
+}
@@ -1,15 +1,21 @@
 package com.github.fanfever.fever.config.process;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
-import org.springframework.batch.item.ItemProcessor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
 import com.github.fanfever.fever.item.User;
+import com.github.fanfever.fever.processor.AsyncItemProcessor;
+import com.github.fanfever.fever.processor.CachingLookup;
+import com.github.fanfever.fever.processor.CircuitBreaker;
+import com.github.fanfever.fever.processor.LookupItemProcessor;
 
 /**
  * @author fanfever
@@ -20,21 +26,76 @@ import com.github.fanfever.fever.item.User;
 @Configuration
 public class SimpleProcessorConfiguration {
 
+	private static final String HELLO_URL = "http://staging1.udeska1.com/api/hello";
+
+	@Autowired
+	private RestTemplate restTemplate;
+
+	@Value("${fever.batch.remote.max-in-flight:16}")
+	private int maxInFlight;
+
+	@Value("${fever.batch.remote.circuit-breaker.failure-threshold:10}")
+	private int failureThreshold;
+
+	@Value("${fever.batch.remote.circuit-breaker.open-millis:30000}")
+	private long openMillis;
+
+	@Value("${fever.batch.remote.cache.maximum-size:10000}")
+	private long cacheMaximumSize;
+
+	@Value("${fever.batch.remote.cache.ttl-millis:60000}")
+	private long cacheTtlMillis;
+
+	@Value("${fever.batch.remote.cache.batched:true}")
+	private boolean batched;
+
 	@Bean
 	@StepScope
 	public SimpleProcessor simpleProcessor() {
-		return new SimpleProcessor();
+		SimpleProcessor processor = new SimpleProcessor();
+		processor.setLookup(helloLookup());
+		processor.setKeyExtractor(user -> HELLO_URL);
+		processor.setBatched(batched);
+		return processor;
 	}
 
-	public class SimpleProcessor implements ItemProcessor<User, User> {
+	/**
+	 * 各step共享，/api/hello没有批量接口，批量预取时逐个查询未命中的url
+	 */
+	@Bean
+	public CachingLookup<String, String> helloLookup() {
+		return new CachingLookup<String, String>(url -> restTemplate
+				.exchange(url, HttpMethod.GET, new HttpEntity<>(null), String.class).getBody(), null,
+				cacheMaximumSize, cacheTtlMillis);
+	}
+
+	/**
+	 * simpleProcessor的并发版本，最多maxInFlight个远程调用同时进行
+	 */
+	@Bean
+	@StepScope
+	public AsyncItemProcessor<User, User> asyncSimpleProcessor() {
+		AsyncItemProcessor<User, User> processor = new AsyncItemProcessor<User, User>();
+		processor.setDelegate(simpleProcessor());
+		processor.setTaskExecutor(remoteTaskExecutor());
+		processor.setMaxInFlight(maxInFlight);
+		processor.setCircuitBreaker(new CircuitBreaker(failureThreshold, openMillis));
+		return processor;
+	}
+
+	@Bean
+	public TaskExecutor remoteTaskExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(maxInFlight);
+		taskExecutor.setMaxPoolSize(maxInFlight);
+		taskExecutor.setThreadNamePrefix("remote-");
+		return taskExecutor;
+	}
 
-		@Autowired
-		RestTemplate restTemplate;
+	public class SimpleProcessor extends LookupItemProcessor<User, String, String, User> {
 
 		@Override
-		public User process(User user) throws Exception {
-			String message = restTemplate.exchange("http://staging1.udeska1.com/api/hello", HttpMethod.GET,
-					new HttpEntity<>(null), String.class).getBody();
+		protected User merge(User user, String message) throws Exception {
 			user.setUsername(message);
 			return user;
 		}
@@ -1,19 +1,17 @@
 package com.github.fanfever.fever.config.reader;
 
-import java.util.Map;
-
 import javax.sql.DataSource;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
 import org.springframework.batch.item.database.Order;
-import org.springframework.batch.item.database.support.MySqlPagingQueryProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.github.fanfever.fever.item.User;
-import com.google.common.collect.Maps;
+import com.github.fanfever.fever.reader.JdbcReaderFactory;
 
 /**
  * 
@@ -31,22 +29,18 @@ public class ScheduleReaderConfiguration {
 	@Autowired
 	public DataSource dataSource;
 
+	@Value("${fever.batch.reader.page-size:1000}")
+	private int pageSize;
+
+	@Value("${fever.batch.reader.fetch-size:1000}")
+	private int fetchSize;
+
 	@Bean
 	@StepScope
-	public JdbcPagingItemReader<User> scheduleReader() {
-		MySqlPagingQueryProvider queryProvider = new MySqlPagingQueryProvider();
-		queryProvider.setSelectClause("id, username, sex, create_time, version");
-		queryProvider.setFromClause("user");
-		Map<String, Order> sortKeyMap = Maps.newHashMap();
-		sortKeyMap.put("id", Order.ASCENDING);
-		queryProvider.setSortKeys(sortKeyMap);
-
-		JdbcPagingItemReader<User> reader = new JdbcPagingItemReader<User>();
-		reader.setDataSource(dataSource);
-		reader.setFetchSize(10);
-		reader.setRowMapper((rs, rowNum) -> User.build(rs.getInt("id"), rs.getString("username"), rs.getInt("sex"),
-				rs.getTimestamp("create_time").getTime(), rs.getInt("version")));
-		reader.setQueryProvider(queryProvider);
-		return reader;
+	public JdbcPagingItemReader<User> scheduleReader() throws Exception {
+		return JdbcReaderFactory.of(dataSource, (rs, rowNum) -> User.build(rs.getInt("id"), rs.getString("username"),
+				rs.getInt("sex"), rs.getTimestamp("create_time").getTime(), rs.getInt("version")))
+				.select("id, username, sex, create_time, version").from("user").sortKey("id", Order.ASCENDING)
+				.pageSize(pageSize).fetchSize(fetchSize).paging();
 	}
 }
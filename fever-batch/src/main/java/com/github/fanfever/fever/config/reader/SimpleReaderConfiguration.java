@@ -1,19 +1,18 @@
 package com.github.fanfever.fever.config.reader;
 
-import java.util.Map;
-
 import javax.sql.DataSource;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
 import org.springframework.batch.item.database.Order;
-import org.springframework.batch.item.database.support.MySqlPagingQueryProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.github.fanfever.fever.item.User;
-import com.google.common.collect.Maps;
+import com.github.fanfever.fever.partition.ColumnRangePartitioner;
+import com.github.fanfever.fever.reader.JdbcReaderFactory;
 
 /**
  * 
@@ -31,23 +30,35 @@ public class SimpleReaderConfiguration {
 	@Autowired
 	public DataSource dataSource;
 
+	@Value("${fever.batch.reader.page-size:1000}")
+	private int pageSize;
+
+	@Value("${fever.batch.reader.fetch-size:1000}")
+	private int fetchSize;
+
+	@Bean
+	@StepScope
+	public JdbcPagingItemReader<User> simpleReader() throws Exception {
+		return JdbcReaderFactory.of(dataSource, (rs, rowNum) -> User.build(rs.getInt("id"), rs.getString("username"),
+				rs.getInt("sex"), rs.getTimestamp("create_time").getTime(), rs.getInt("version")))
+				.select("id, username, sex, create_time, version").from("user").where("sex = 1")
+				.sortKey("id", Order.ASCENDING).pageSize(pageSize).fetchSize(fetchSize).paging();
+	}
+
+	/**
+	 * simplePartitionJob分区reader，只读取分区ExecutionContext中的id闭区间
+	 */
 	@Bean
 	@StepScope
-	public JdbcPagingItemReader<User> simpleReader() {
-		MySqlPagingQueryProvider queryProvider = new MySqlPagingQueryProvider();
-		queryProvider.setSelectClause("id, username, sex, create_time, version");
-		queryProvider.setFromClause("user");
-		queryProvider.setWhereClause("sex = 1");
-		Map<String, Order> sortKeyMap = Maps.newHashMap();
-		sortKeyMap.put("id", Order.ASCENDING);
-		queryProvider.setSortKeys(sortKeyMap);
-
-		JdbcPagingItemReader<User> reader = new JdbcPagingItemReader<User>();
-		reader.setDataSource(dataSource);
-		reader.setFetchSize(10);
-		reader.setRowMapper((rs, rowNum) -> User.build(rs.getInt("id"), rs.getString("username"), rs.getInt("sex"),
-				rs.getTimestamp("create_time").getTime(), rs.getInt("version")));
-		reader.setQueryProvider(queryProvider);
-		return reader;
+	public JdbcPagingItemReader<User> simplePartitionReader(
+			@Value("#{stepExecutionContext['" + ColumnRangePartitioner.MIN_VALUE + "']}") Long minValue,
+			@Value("#{stepExecutionContext['" + ColumnRangePartitioner.MAX_VALUE + "']}") Long maxValue,
+			@Value("${fever.batch.simple-partition.page-size:100}") int partitionPageSize) throws Exception {
+		return JdbcReaderFactory.of(dataSource, (rs, rowNum) -> User.build(rs.getInt("id"), rs.getString("username"),
+				rs.getInt("sex"), rs.getTimestamp("create_time").getTime(), rs.getInt("version")))
+				.select("id, username, sex, create_time, version").from("user")
+				.where("sex = 1 AND id >= :minValue AND id <= :maxValue").parameter("minValue", minValue)
+				.parameter("maxValue", maxValue).sortKey("id", Order.ASCENDING).pageSize(partitionPageSize)
+				.fetchSize(fetchSize).paging();
 	}
 }
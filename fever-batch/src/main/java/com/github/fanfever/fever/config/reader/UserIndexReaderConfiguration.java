@@ -0,0 +1,51 @@
+package com.github.fanfever.fever.config.reader;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.fanfever.fever.item.User;
+import com.github.fanfever.fever.partition.ColumnRangePartitioner;
+import com.github.fanfever.fever.reader.JdbcReaderFactory;
+
+/**
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ * 
+ *         按分区id范围读取user，JdbcPagingItemReader首页之后按id > 上页最后id取数(keyset)，
+ *         提交后的位置保存在step execution context中，restart时从最后提交的chunk之后继续
+ */
+@Configuration
+public class UserIndexReaderConfiguration {
+
+	@Autowired
+	public DataSource dataSource;
+
+	@Value("${fever.batch.user-index.page-size:1000}")
+	private int pageSize;
+
+	@Value("${fever.batch.reader.fetch-size:1000}")
+	private int fetchSize;
+
+	@Bean
+	@StepScope
+	public JdbcPagingItemReader<User> userIndexReader(
+			@Value("#{stepExecutionContext['" + ColumnRangePartitioner.MIN_VALUE + "']}") Long minValue,
+			@Value("#{stepExecutionContext['" + ColumnRangePartitioner.MAX_VALUE + "']}") Long maxValue)
+			throws Exception {
+		return JdbcReaderFactory.of(dataSource, (rs, rowNum) -> User.build(rs.getInt("id"), rs.getString("username"),
+				rs.getInt("sex"), rs.getTimestamp("create_time").getTime(), rs.getInt("version")))
+				.select("id, username, sex, create_time, version").from("user")
+				.where("id >= :minValue AND id <= :maxValue").parameter("minValue", minValue)
+				.parameter("maxValue", maxValue).sortKey("id", Order.ASCENDING).pageSize(pageSize)
+				.fetchSize(fetchSize).paging();
+	}
+}
@@ -3,13 +3,13 @@ package com.github.fanfever.fever.config.writer;
 import javax.sql.DataSource;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
-import org.springframework.batch.item.database.BeanPropertyItemSqlParameterSourceProvider;
-import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.github.fanfever.fever.item.User;
+import com.github.fanfever.fever.writer.MultiRowItemWriter;
 
 /**
  * 
@@ -24,13 +24,20 @@ public class ScheduleWriterConfiguration {
 	@Autowired
 	public DataSource dataSource;
 
+	@Value("${fever.batch.writer.statement-batch-size:500}")
+	private int statementBatchSize;
+
 	@Bean
 	@StepScope
-	public JdbcBatchItemWriter<User> scheduleWriter() {
-		JdbcBatchItemWriter<User> writer = new JdbcBatchItemWriter();
+	public MultiRowItemWriter<User> scheduleWriter() {
+		MultiRowItemWriter<User> writer = new MultiRowItemWriter<User>();
 		writer.setDataSource(dataSource);
-		writer.setItemSqlParameterSourceProvider(new BeanPropertyItemSqlParameterSourceProvider<User>());
-		writer.setSql("UPDATE user SET version = :version WHERE id = :id");
+		writer.setItemClass(User.class);
+		writer.setTable("user");
+		writer.setMode(MultiRowItemWriter.Mode.UPDATE);
+		writer.addKeyColumn("id");
+		writer.addValueColumn("version");
+		writer.setStatementBatchSize(statementBatchSize);
 		return writer;
 	}
 }
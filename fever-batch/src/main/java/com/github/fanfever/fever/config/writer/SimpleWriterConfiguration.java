@@ -3,13 +3,14 @@ package com.github.fanfever.fever.config.writer;
 import javax.sql.DataSource;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
-import org.springframework.batch.item.database.BeanPropertyItemSqlParameterSourceProvider;
-import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.github.fanfever.fever.item.User;
+import com.github.fanfever.fever.processor.AsyncItemWriter;
+import com.github.fanfever.fever.writer.MultiRowItemWriter;
 
 /**
  * 
@@ -24,13 +25,35 @@ public class SimpleWriterConfiguration {
 	@Autowired
 	public DataSource dataSource;
 
+	@Value("${fever.batch.writer.statement-batch-size:500}")
+	private int statementBatchSize;
+
+	@Value("${fever.batch.remote.timeout-millis:10000}")
+	private long timeoutMillis;
+
 	@Bean
 	@StepScope
-	public JdbcBatchItemWriter<User> simpleWriter() {
-		JdbcBatchItemWriter<User> writer = new JdbcBatchItemWriter<User>();
+	public MultiRowItemWriter<User> simpleWriter() {
+		MultiRowItemWriter<User> writer = new MultiRowItemWriter<User>();
 		writer.setDataSource(dataSource);
-		writer.setItemSqlParameterSourceProvider(new BeanPropertyItemSqlParameterSourceProvider<User>());
-		writer.setSql("UPDATE user SET username = :username WHERE id = :id");
+		writer.setItemClass(User.class);
+		writer.setTable("user");
+		writer.setMode(MultiRowItemWriter.Mode.UPDATE);
+		writer.addKeyColumn("id");
+		writer.addValueColumn("username");
+		writer.setStatementBatchSize(statementBatchSize);
+		return writer;
+	}
+
+	/**
+	 * 按读取顺序取回asyncSimpleProcessor的结果后写入
+	 */
+	@Bean
+	@StepScope
+	public AsyncItemWriter<User> asyncSimpleWriter() {
+		AsyncItemWriter<User> writer = new AsyncItemWriter<User>();
+		writer.setDelegate(simpleWriter());
+		writer.setTimeoutMillis(timeoutMillis);
 		return writer;
 	}
 }
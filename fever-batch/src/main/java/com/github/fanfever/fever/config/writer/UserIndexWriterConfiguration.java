@@ -0,0 +1,56 @@
+package com.github.fanfever.fever.config.writer;
+
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fanfever.fever.command.DocumentCommand;
+import com.github.fanfever.fever.command.enums.DocumentCommandType;
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import com.github.fanfever.fever.item.User;
+import com.github.fanfever.fever.item.UserDocument;
+import com.github.fanfever.fever.writer.ElasticsearchItemWriter;
+
+/**
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Configuration
+public class UserIndexWriterConfiguration {
+
+	@Autowired
+	private DocumentCommand documentCommand;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Value("${fever.batch.user-index.index:user}")
+	private String index;
+
+	@Value("${fever.batch.user-index.type:user}")
+	private String type;
+
+	@Value("${fever.batch.user-index.bulk-actions:1000}")
+	private int bulkActions;
+
+	@Value("${fever.batch.user-index.bulk-size-in-bytes:5242880}")
+	private long bulkSizeInBytes;
+
+	@Bean
+	@StepScope
+	public ElasticsearchItemWriter<User> userIndexWriter() {
+		ElasticsearchItemWriter<User> writer = new ElasticsearchItemWriter<User>();
+		writer.setDocumentCommand(documentCommand);
+		writer.setObjectMapper(objectMapper);
+		writer.setRequestMapper(user -> DocumentCommandRequest.of(DocumentCommandType.SAVE, index, type, user.getId())
+				.setDocument(UserDocument.of(user)));
+		writer.setBulkActions(bulkActions);
+		writer.setBulkSizeInBytes(bulkSizeInBytes);
+		return writer;
+	}
+}
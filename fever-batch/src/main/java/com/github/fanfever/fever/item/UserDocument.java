@@ -0,0 +1,63 @@
+package com.github.fanfever.fever.item;
+
+import java.time.ZoneId;
+
+import com.github.fanfever.fever.command.request.BaseDocument;
+
+/**
+ * user在elasticsearch中的document
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class UserDocument extends BaseDocument {
+
+	private String username;
+	private Integer sex;
+	private Long createTime;
+	private Integer version;
+
+	public static UserDocument of(User user) {
+		UserDocument document = new UserDocument();
+		document.setId(user.getId());
+		document.setUsername(user.getUsername());
+		document.setSex(user.getSex());
+		document.setCreateTime(null == user.getCreateTime() ? null
+				: user.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+		document.setVersion(user.getVersion());
+		return document;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	public Integer getSex() {
+		return sex;
+	}
+
+	public void setSex(Integer sex) {
+		this.sex = sex;
+	}
+
+	public Long getCreateTime() {
+		return createTime;
+	}
+
+	public void setCreateTime(Long createTime) {
+		this.createTime = createTime;
+	}
+
+	public Integer getVersion() {
+		return version;
+	}
+
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
+}
@@ -0,0 +1,239 @@
+package com.github.fanfever.fever.listener;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * 汇总skip/retry，不逐条打印日志
+ * 
+ * 按step execution、阶段和异常类计数，每个异常类只打印前sampleLimit个堆栈；
+ * 跳过的item序列化为json后批量写入batch_dead_letter表(见clear.sql)供重放。
+ * dead letter按step execution排队，在独立事务(REQUIRES_NEW)中写入，不随chunk回滚，也不写入其他分区的队列。
+ * 需注册为step的{@link StepExecutionListener}，step结束时写入本step剩余dead letter，
+ * 并将本step的计数写入step execution context(skipRetry.阶段.异常类)；
+ * 累计计数发布到/metrics，名称为batch.skipRetry.阶段.异常类
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Component
+public class SkipRetryRecorder implements StepExecutionListener, PublicMetrics {
+
+	public enum Phase {
+		READ, PROCESS, WRITE, RETRY
+	}
+
+	private static final String INSERT_SQL = "INSERT INTO batch_dead_letter (job_name, step_name, step_execution_id, phase, item, exception_class, exception_message, create_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final Long UNKNOWN_STEP_EXECUTION_ID = -1L;
+	private static final String METRIC_PREFIX = "batch.skipRetry.";
+
+	Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+
+	@Value("${fever.batch.skip-retry.sample-limit:3}")
+	private int sampleLimit;
+
+	@Value("${fever.batch.skip-retry.dead-letter.enabled:true}")
+	private boolean deadLetterEnabled;
+
+	@Value("${fever.batch.skip-retry.dead-letter.batch-size:100}")
+	private int deadLetterBatchSize;
+
+	/**
+	 * 启动以来的累计计数，key为阶段.异常类
+	 */
+	private final Map<String, LongAdder> totalMap = new ConcurrentHashMap<String, LongAdder>();
+	private final Map<Long, Map<String, LongAdder>> stepMap = new ConcurrentHashMap<Long, Map<String, LongAdder>>();
+	private final Map<Class<?>, AtomicInteger> sampleMap = new ConcurrentHashMap<Class<?>, AtomicInteger>();
+	private final Map<Long, Queue<Object[]>> deadLetterMap = new ConcurrentHashMap<Long, Queue<Object[]>>();
+
+	@Autowired
+	public void setDataSource(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	public void recordSkip(Phase phase, Object item, Throwable t) {
+		StepExecution stepExecution = currentStepExecution();
+		count(stepExecution, phase, t);
+		sample(phase, t);
+		if (deadLetterEnabled) {
+			Long stepExecutionId = stepExecutionId(stepExecution);
+			Queue<Object[]> deadLetterQueue = deadLetterMap.computeIfAbsent(stepExecutionId, id -> new ConcurrentLinkedQueue<Object[]>());
+			deadLetterQueue.add(deadLetter(stepExecution, phase, item, t));
+			if (deadLetterQueue.size() >= deadLetterBatchSize) {
+				flush(stepExecutionId);
+			}
+		}
+	}
+
+	public void recordRetry(Throwable t) {
+		count(currentStepExecution(), Phase.RETRY, t);
+		sample(Phase.RETRY, t);
+	}
+
+	/**
+	 * @return 启动以来的累计计数，key为阶段.异常类
+	 */
+	public Map<String, Long> getCounts() {
+		Map<String, Long> counts = Maps.newTreeMap();
+		totalMap.forEach((key, value) -> counts.put(key, value.sum()));
+		return counts;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metricList = Lists.newArrayList();
+		totalMap.forEach((key, value) -> metricList.add(new Metric<Long>(METRIC_PREFIX + key, value.sum())));
+		return metricList;
+	}
+
+	/**
+	 * 写入所有step队列中的dead letter
+	 */
+	public void flush() {
+		deadLetterMap.keySet().forEach(this::flush);
+	}
+
+	/**
+	 * 写入指定step execution队列中的dead letter
+	 */
+	public void flush(Long stepExecutionId) {
+		Queue<Object[]> deadLetterQueue = deadLetterMap.get(stepExecutionId);
+		if (null == deadLetterQueue) {
+			return;
+		}
+		List<Object[]> batch = Lists.newArrayListWithCapacity(deadLetterBatchSize);
+		for (Object[] deadLetter = deadLetterQueue.poll(); null != deadLetter; deadLetter = deadLetterQueue.poll()) {
+			batch.add(deadLetter);
+			if (batch.size() >= deadLetterBatchSize) {
+				insert(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			insert(batch);
+		}
+	}
+
+	private void insert(List<Object[]> batch) {
+		transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch));
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		if (deadLetterEnabled) {
+			try {
+				flush(stepExecution.getId());
+				// 无step上下文(如listener在其他线程中回调)时记录的dead letter
+				flush(UNKNOWN_STEP_EXECUTION_ID);
+			} catch (Exception e) {
+				logger.error("flush dead letter fail, stepExecutionId:{}", stepExecution.getId(), e);
+			} finally {
+				deadLetterMap.remove(stepExecution.getId());
+			}
+		}
+		Map<String, LongAdder> countMap = stepMap.remove(stepExecution.getId());
+		if (null != countMap && !countMap.isEmpty()) {
+			Map<String, Long> counts = Maps.newTreeMap();
+			countMap.forEach((key, value) -> counts.put(key, value.sum()));
+			counts.forEach((key, value) -> stepExecution.getExecutionContext().putLong("skipRetry." + key, value));
+			logger.warn("step:{} skip/retry:{}", stepExecution.getStepName(), counts);
+		}
+		return null;
+	}
+
+	private void count(StepExecution stepExecution, Phase phase, Throwable t) {
+		String key = phase.name().toLowerCase() + "." + t.getClass().getName();
+		totalMap.computeIfAbsent(key, k -> new LongAdder()).increment();
+		stepMap.computeIfAbsent(stepExecutionId(stepExecution), id -> new ConcurrentHashMap<String, LongAdder>())
+				.computeIfAbsent(key, k -> new LongAdder()).increment();
+	}
+
+	private void sample(Phase phase, Throwable t) {
+		if (sampleMap.computeIfAbsent(t.getClass(), c -> new AtomicInteger()).incrementAndGet() <= sampleLimit) {
+			logger.warn("{} {} (sampled, first {} per exception class)", phase, t.getClass().getName(), sampleLimit, t);
+		} else if (logger.isDebugEnabled()) {
+			logger.debug("{} {}: {}", phase, t.getClass().getName(), t.getMessage());
+		}
+	}
+
+	private Object[] deadLetter(StepExecution stepExecution, Phase phase, Object item, Throwable t) {
+		String jobName = null;
+		String stepName = null;
+		Long stepExecutionId = null;
+		if (null != stepExecution) {
+			jobName = stepExecution.getJobExecution().getJobInstance().getJobName();
+			stepName = stepExecution.getStepName();
+			stepExecutionId = stepExecution.getId();
+		}
+		return new Object[] { jobName, stepName, stepExecutionId, phase.name(), serialize(item), t.getClass().getName(),
+				abbreviate(t.getMessage()), new Timestamp(System.currentTimeMillis()) };
+	}
+
+	private static String abbreviate(String message) {
+		return null == message || message.length() <= 1000 ? message : message.substring(0, 1000);
+	}
+
+	private String serialize(Object item) {
+		if (null == item) {
+			return null;
+		}
+		try {
+			return objectMapper.writeValueAsString(item);
+		} catch (Exception e) {
+			return String.valueOf(item);
+		}
+	}
+
+	private static Long stepExecutionId(StepExecution stepExecution) {
+		return null == stepExecution ? UNKNOWN_STEP_EXECUTION_ID : stepExecution.getId();
+	}
+
+	private static StepExecution currentStepExecution() {
+		StepContext context = StepSynchronizationManager.getContext();
+		return null == context ? null : context.getStepExecution();
+	}
+
+}
@@ -1,12 +1,12 @@
 package com.github.fanfever.fever.listener;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.retry.RetryCallback;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.listener.RetryListenerSupport;
 
 /**
+ * retry交给{@link SkipRetryRecorder}计数，不逐条打印日志
+ * 
  * @author fanfever
  * @email fanfeveryahoo@gmail.com
  * @url https://github.com/fanfever
@@ -14,13 +14,16 @@ import org.springframework.retry.listener.RetryListenerSupport;
  */
 public class StepRetryListener extends RetryListenerSupport {
 
-	Logger logger = LoggerFactory.getLogger(this.getClass());
+	private final SkipRetryRecorder recorder;
+
+	public StepRetryListener(SkipRetryRecorder recorder) {
+		this.recorder = recorder;
+	}
 
 	@Override
 	public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
 			Throwable throwable) {
-		logger.error("onError retryCount:{}", context.getRetryCount());
-		logger.error("onError", throwable);
+		recorder.recordRetry(throwable);
 		super.onError(context, callback, throwable);
 	}
 
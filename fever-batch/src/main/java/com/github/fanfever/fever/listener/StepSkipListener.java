@@ -1,10 +1,20 @@
 package com.github.fanfever.fever.listener;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import org.springframework.batch.core.listener.SkipListenerSupport;
 
+import com.github.fanfever.fever.listener.SkipRetryRecorder.Phase;
+import com.github.fanfever.fever.processor.AsyncItemProcessingException;
+import com.github.fanfever.fever.processor.AsyncItemProcessor;
+
 /**
+ * skip交给{@link SkipRetryRecorder}计数及写入dead letter，不逐条打印日志
+ * 
+ * 配合{@link AsyncItemProcessor}时写入阶段收到的item是Future：处理失败的记录输入item，
+ * 处理成功(delegate writer失败)的记录处理结果，超时被取消的无法取回item
+ * 
  * @author fanfever
  * @email fanfeveryahoo@gmail.com
  * @url https://github.com/fanfever
@@ -12,26 +22,46 @@ import org.springframework.batch.core.listener.SkipListenerSupport;
  */
 public class StepSkipListener<T, S> extends SkipListenerSupport<T, S> {
 
-	Logger logger = LoggerFactory.getLogger(this.getClass());
+	private final SkipRetryRecorder recorder;
+
+	public StepSkipListener(SkipRetryRecorder recorder) {
+		this.recorder = recorder;
+	}
 
 	@Override
 	public void onSkipInRead(Throwable t) {
-		logger.error("onSkipInRead", t);
+		recorder.recordSkip(Phase.READ, null, t);
 		super.onSkipInRead(t);
 	}
 
 	@Override
 	public void onSkipInWrite(S item, Throwable t) {
-		logger.error("onSkipInWrite item:{}", item);
-		logger.error("onSkipInWrite", t);
+		recorder.recordSkip(Phase.WRITE, unwrap(item), t);
 		super.onSkipInWrite(item, t);
 	}
 
 	@Override
 	public void onSkipInProcess(T item, Throwable t) {
-		logger.error("onSkipInProcess item:{}", item);
-		logger.error("onSkipInProcess", t);
+		recorder.recordSkip(Phase.PROCESS, item, t);
 		super.onSkipInProcess(item, t);
 	}
 
+	private static Object unwrap(Object item) {
+		if (!(item instanceof Future)) {
+			return item;
+		}
+		Future<?> future = (Future<?>) item;
+		if (!future.isDone() || future.isCancelled()) {
+			return null;
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			return e.getCause() instanceof AsyncItemProcessingException ? ((AsyncItemProcessingException) e.getCause()).getItem() : null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
 }
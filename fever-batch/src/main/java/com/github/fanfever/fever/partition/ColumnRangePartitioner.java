@@ -0,0 +1,78 @@
+package com.github.fanfever.fever.partition;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.google.common.collect.Maps;
+
+/**
+ * 按数值列(通常为自增主键)的MIN/MAX将表等分为gridSize个闭区间
+ * 
+ * 每个分区的ExecutionContext中写入{@link #MIN_VALUE}/{@link #MAX_VALUE}，供step scope的reader限定范围；
+ * 分区的step execution保存在job repository中，restart时只重跑未完成的分区
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class ColumnRangePartitioner implements Partitioner {
+
+	public static final String MIN_VALUE = "minValue";
+	public static final String MAX_VALUE = "maxValue";
+
+	private JdbcOperations jdbcTemplate;
+	private String table;
+	private String column;
+	private String whereClause;
+
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		String where = null == whereClause ? "" : " WHERE " + whereClause;
+		Long min = jdbcTemplate.queryForObject("SELECT MIN(" + column + ") FROM " + table + where, Long.class);
+		Long max = jdbcTemplate.queryForObject("SELECT MAX(" + column + ") FROM " + table + where, Long.class);
+		Map<String, ExecutionContext> result = Maps.newHashMap();
+		if (null == min || null == max) {
+			result.put("partition0", context(1, 0));
+			return result;
+		}
+		long targetSize = (max - min) / gridSize + 1;
+		int number = 0;
+		for (long start = min; start <= max; start += targetSize) {
+			result.put("partition" + number++, context(start, Math.min(start + targetSize - 1, max)));
+		}
+		return result;
+	}
+
+	private static ExecutionContext context(long minValue, long maxValue) {
+		ExecutionContext executionContext = new ExecutionContext();
+		executionContext.putLong(MIN_VALUE, minValue);
+		executionContext.putLong(MAX_VALUE, maxValue);
+		return executionContext;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	public void setTable(String table) {
+		this.table = table;
+	}
+
+	public void setColumn(String column) {
+		this.column = column;
+	}
+
+	/**
+	 * @param whereClause 与reader相同的过滤条件(不含WHERE)，用于收窄MIN/MAX范围
+	 */
+	public void setWhereClause(String whereClause) {
+		this.whereClause = whereClause;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.github.fanfever.fever.policy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+import org.springframework.boot.actuate.metrics.GaugeService;
+
+/**
+ * 按事务耗时调整chunk大小，使每次提交接近targetMillis
+ * 
+ * 每个满chunk提交后按本次吞吐计算目标大小，与当前大小各取一半，单次最多翻倍；
+ * 回滚后减半。当前大小写入step execution context的{@link #CHUNK_SIZE}，随step一起持久化；
+ * 设置gaugeService时同时发布为gauge.batch.{stepName}.chunkSize。
+ * 需要同时注册为step的{@link ChunkListener}，每个step execution使用独立实例(step scope)
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class AdaptiveCompletionPolicy extends SimpleCompletionPolicy implements ChunkListener {
+
+	public static final String CHUNK_SIZE = "chunkSize";
+
+	Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final long targetMillis;
+	private final int minChunkSize;
+	private final int maxChunkSize;
+
+	private GaugeService gaugeService;
+
+	private long startNanos;
+	private int startReadCount;
+
+	/**
+	 * @param targetMillis 目标事务耗时(ms)
+	 * @param initialChunkSize 初始chunk大小，restart时使用上次保存的大小
+	 * @param minChunkSize 最小chunk大小
+	 * @param maxChunkSize 最大chunk大小
+	 */
+	public AdaptiveCompletionPolicy(long targetMillis, int initialChunkSize, int minChunkSize, int maxChunkSize) {
+		super(initialChunkSize);
+		this.targetMillis = targetMillis;
+		this.minChunkSize = minChunkSize;
+		this.maxChunkSize = maxChunkSize;
+	}
+
+	@Override
+	public void beforeChunk(ChunkContext context) {
+		StepExecution stepExecution = context.getStepContext().getStepExecution();
+		if (stepExecution.getExecutionContext().containsKey(CHUNK_SIZE)) {
+			setChunkSize(stepExecution.getExecutionContext().getInt(CHUNK_SIZE));
+		}
+		startReadCount = stepExecution.getReadCount();
+		startNanos = System.nanoTime();
+	}
+
+	@Override
+	public void afterChunk(ChunkContext context) {
+		StepExecution stepExecution = context.getStepContext().getStepExecution();
+		int items = stepExecution.getReadCount() - startReadCount;
+		long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+		if (items >= getChunkSize()) {
+			int desired = (int) Math.min(Integer.MAX_VALUE, items * targetMillis / elapsedMillis);
+			resize(stepExecution, Math.min((getChunkSize() + desired) / 2, getChunkSize() * 2));
+		}
+		logger.debug("afterChunk items:{}, elapsedMillis:{}, chunkSize:{}", items, elapsedMillis, getChunkSize());
+	}
+
+	@Override
+	public void afterChunkError(ChunkContext context) {
+		resize(context.getStepContext().getStepExecution(), getChunkSize() / 2);
+	}
+
+	private void resize(StepExecution stepExecution, int chunkSize) {
+		setChunkSize(Math.max(minChunkSize, Math.min(maxChunkSize, chunkSize)));
+		stepExecution.getExecutionContext().putInt(CHUNK_SIZE, getChunkSize());
+		if (null != gaugeService) {
+			gaugeService.submit("gauge.batch." + stepExecution.getStepName().replaceAll("[^\\w.-]", "_") + "." + CHUNK_SIZE, getChunkSize());
+		}
+	}
+
+	/**
+	 * @param gaugeService 为null时不发布指标
+	 */
+	public void setGaugeService(GaugeService gaugeService) {
+		this.gaugeService = gaugeService;
+	}
+
+}
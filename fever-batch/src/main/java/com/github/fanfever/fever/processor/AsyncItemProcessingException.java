@@ -0,0 +1,26 @@
+package com.github.fanfever.fever.processor;
+
+/**
+ * {@link AsyncItemProcessor}返回的Future的失败原因，携带输入item，
+ * skip listener收到的是Future，需由此取回原始item写入dead letter
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class AsyncItemProcessingException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient Object item;
+
+	public AsyncItemProcessingException(Object item, Throwable cause) {
+		super(cause.getMessage(), cause);
+		this.item = item;
+	}
+
+	public Object getItem() {
+		return item;
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.github.fanfever.fever.processor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.Assert;
+
+import com.github.fanfever.fever.processor.CircuitBreaker.CircuitBreakerOpenException;
+
+/**
+ * 将delegate放到taskExecutor中执行，立即返回{@link Future}，由{@link AsyncItemWriter}按chunk顺序取回结果
+ * 
+ * 在途item数超过maxInFlight时阻塞读取线程；circuitBreaker打开时不再调用delegate，返回失败的Future，
+ * 避免慢上游拖住整个step。delegate可以是step scope的bean，执行线程中会注册当前step execution
+ * 
+ * 失败的Future以{@link AsyncItemProcessingException}完成，携带输入item，原始异常为其cause
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class AsyncItemProcessor<I, O> implements ItemProcessor<I, Future<O>>, InitializingBean {
+
+	private ItemProcessor<I, O> delegate;
+	private TaskExecutor taskExecutor;
+	private Semaphore inFlight = new Semaphore(16);
+	private CircuitBreaker circuitBreaker;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "delegate is required");
+		Assert.notNull(taskExecutor, "taskExecutor is required");
+	}
+
+	@Override
+	public Future<O> process(final I item) throws Exception {
+		ProcessFuture<O> future = new ProcessFuture<O>();
+		if (null != circuitBreaker && !circuitBreaker.allowRequest()) {
+			future.completeExceptionally(new AsyncItemProcessingException(item, new CircuitBreakerOpenException("circuit breaker is open, item:" + item)));
+			return future;
+		}
+		final StepExecution stepExecution = getStepExecution();
+		inFlight.acquire();
+		try {
+			taskExecutor.execute(() -> {
+				if (!future.start()) {
+					inFlight.release();
+					return;
+				}
+				if (null != stepExecution) {
+					StepSynchronizationManager.register(stepExecution);
+				}
+				try {
+					O result = delegate.process(item);
+					if (null != circuitBreaker) {
+						circuitBreaker.recordSuccess();
+					}
+					future.complete(result);
+				} catch (Throwable t) {
+					if (null != circuitBreaker) {
+						circuitBreaker.recordFailure();
+					}
+					future.completeExceptionally(new AsyncItemProcessingException(item, t));
+				} finally {
+					future.finish();
+					inFlight.release();
+					if (null != stepExecution) {
+						StepSynchronizationManager.close();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+		return future;
+	}
+
+	private static StepExecution getStepExecution() {
+		StepContext context = StepSynchronizationManager.getContext();
+		return null == context ? null : context.getStepExecution();
+	}
+
+	public void setDelegate(ItemProcessor<I, O> delegate) {
+		this.delegate = delegate;
+	}
+
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * @param maxInFlight 同时执行中的item上限
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * cancel(true)时中断执行线程，尚未开始的item不再执行
+	 * 
+	 * 阻塞的socket读不响应中断：已发出的远程调用仍会执行到结束或读超时，期间占用在途名额，
+	 * 因此远程调用的读超时应小于{@link AsyncItemWriter}的timeoutMillis
+	 */
+	static class ProcessFuture<O> extends CompletableFuture<O> {
+
+		private Thread runner;
+
+		/**
+		 * @return false if cancelled before start
+		 */
+		synchronized boolean start() {
+			if (isDone()) {
+				return false;
+			}
+			runner = Thread.currentThread();
+			return true;
+		}
+
+		/**
+		 * 清除执行期间收到的中断，避免影响线程池中的下一个任务
+		 */
+		synchronized void finish() {
+			runner = null;
+			Thread.interrupted();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled && mayInterruptIfRunning) {
+				synchronized (this) {
+					if (null != runner) {
+						runner.interrupt();
+					}
+				}
+			}
+			return cancelled;
+		}
+
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.github.fanfever.fever.processor;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import com.google.common.collect.Lists;
+
+/**
+ * 按chunk顺序取回{@link AsyncItemProcessor}的结果后交给delegate，item顺序与读取顺序一致
+ * 
+ * 单个item超过timeoutMillis未完成时取消并抛出{@link TimeoutException}：取消会中断{@link AsyncItemProcessor}的执行线程，
+ * 但阻塞中的socket读不响应中断，远程调用仍占用在途名额直到其读超时；
+ * 处理异常取出{@link AsyncItemProcessingException}的cause原样抛出，由step的retry/skip按原始异常类处理；结果为null的item被过滤
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class AsyncItemWriter<T> implements ItemStreamWriter<Future<T>>, InitializingBean {
+
+	private ItemWriter<T> delegate;
+	private long timeoutMillis = 30000;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "delegate is required");
+	}
+
+	@Override
+	public void write(List<? extends Future<T>> items) throws Exception {
+		List<T> list = Lists.newArrayListWithCapacity(items.size());
+		for (Future<T> future : items) {
+			T item;
+			try {
+				item = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				future.cancel(true);
+				throw e;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof AsyncItemProcessingException) {
+					cause = cause.getCause();
+				}
+				if (cause instanceof Exception) {
+					throw (Exception) cause;
+				}
+				throw e;
+			}
+			if (null != item) {
+				list.add(item);
+			}
+		}
+		if (!list.isEmpty()) {
+			delegate.write(list);
+		}
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).open(executionContext);
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).update(executionContext);
+		}
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).close();
+		}
+	}
+
+	public void setDelegate(ItemWriter<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param timeoutMillis 单个item最长等待时间(ms)
+	 */
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+}
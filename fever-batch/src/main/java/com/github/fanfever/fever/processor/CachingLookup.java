@@ -0,0 +1,90 @@
+package com.github.fanfever.fever.processor;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * 远程查询结果缓存，容量有上限，写入ttlMillis后过期
+ * 
+ * 同一key的并发查询只发起一次远程调用，其余调用等待该结果；
+ * 设置bulkLoader时{@link #getAll(Collection)}中未命中的key合并为一次批量查询
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class CachingLookup<K, V> {
+
+	private final LoadingCache<K, Optional<V>> cache;
+
+	/**
+	 * @param loader 单个key查询，可返回null
+	 * @param bulkLoader 批量查询，返回结果中缺少的key视为null；为null时逐个调用loader
+	 * @param maximumSize 最大缓存key数
+	 * @param ttlMillis 缓存有效期(ms)
+	 */
+	public CachingLookup(final Function<K, V> loader, final Function<Collection<K>, Map<K, V>> bulkLoader,
+			long maximumSize, long ttlMillis) {
+		this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+				.expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS).recordStats().build(new CacheLoader<K, Optional<V>>() {
+
+					@Override
+					public Optional<V> load(K key) throws Exception {
+						return Optional.ofNullable(loader.apply(key));
+					}
+
+					@Override
+					public Map<K, Optional<V>> loadAll(Iterable<? extends K> keys) throws Exception {
+						if (null == bulkLoader) {
+							return super.loadAll(keys);
+						}
+						Collection<K> keyList = Lists.newArrayList(keys);
+						Map<K, V> valueMap = bulkLoader.apply(keyList);
+						Map<K, Optional<V>> result = Maps.newHashMapWithExpectedSize(keyList.size());
+						keyList.forEach(key -> result.put(key, Optional.ofNullable(valueMap.get(key))));
+						return result;
+					}
+				});
+	}
+
+	public V get(K key) {
+		try {
+			return cache.get(key).orElse(null);
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException("lookup fail, key:" + key, e.getCause());
+		}
+	}
+
+	/**
+	 * @return 查询结果，值为null的key不包含在内
+	 */
+	public Map<K, V> getAll(Collection<K> keys) {
+		try {
+			Map<K, V> result = Maps.newHashMapWithExpectedSize(keys.size());
+			cache.getAll(keys).forEach((key, value) -> value.ifPresent(v -> result.put(key, v)));
+			return result;
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException("lookup fail, keys:" + keys, e.getCause());
+		}
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.github.fanfever.fever.processor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 连续失败达到阈值后打开，openMillis内的调用直接失败；之后放行一个探测调用，成功则关闭，失败则重新打开
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class CircuitBreaker {
+
+	private final int failureThreshold;
+	private final long openMillis;
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	/**
+	 * 打开时间，0为关闭
+	 */
+	private final AtomicLong openedAt = new AtomicLong();
+
+	/**
+	 * @param failureThreshold 连续失败次数阈值
+	 * @param openMillis 打开持续时间(ms)
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * @return 是否放行本次调用；打开超时后只有一个调用者获得探测机会
+	 */
+	public boolean allowRequest() {
+		long opened = openedAt.get();
+		if (0 == opened) {
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		return now - opened >= openMillis && openedAt.compareAndSet(opened, now);
+	}
+
+	public void recordSuccess() {
+		consecutiveFailures.set(0);
+		openedAt.set(0);
+	}
+
+	public void recordFailure() {
+		if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+			openedAt.set(System.currentTimeMillis());
+		}
+	}
+
+	public boolean isOpen() {
+		return 0 != openedAt.get();
+	}
+
+	/**
+	 * 打开状态下被拒绝的调用
+	 */
+	public static class CircuitBreakerOpenException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public CircuitBreakerOpenException(String message) {
+			super(message);
+		}
+	}
+
+}
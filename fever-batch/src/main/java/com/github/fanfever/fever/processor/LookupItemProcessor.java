@@ -0,0 +1,110 @@
+package com.github.fanfever.fever.processor;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import com.google.common.collect.Sets;
+
+/**
+ * 每个item需要一次远程查询的processor，查询结果经{@link CachingLookup}缓存
+ * 
+ * batched为true时同时作为{@link ItemReadListener}收集chunk内读取的key，
+ * 处理chunk中第一个item前将未命中的key合并为一次批量查询；
+ * 由{@link AsyncItemProcessor}包装时需要在step上显式注册为listener
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public abstract class LookupItemProcessor<I, K, V, O>
+		implements ItemProcessor<I, O>, ItemReadListener<I>, InitializingBean {
+
+	private CachingLookup<K, V> lookup;
+	private Function<? super I, K> keyExtractor;
+	private boolean batched;
+
+	private final Queue<K> pendingKeys = new ConcurrentLinkedQueue<K>();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(lookup, "lookup is required");
+		Assert.notNull(keyExtractor, "keyExtractor is required");
+	}
+
+	@Override
+	public O process(I item) throws Exception {
+		prefetch();
+		K key = keyExtractor.apply(item);
+		return merge(item, null == key ? null : lookup.get(key));
+	}
+
+	/**
+	 * @param item item
+	 * @param value 查询结果，可能为null
+	 * @return 处理结果，返回null时过滤该item
+	 */
+	protected abstract O merge(I item, V value) throws Exception;
+
+	/**
+	 * 批量查询期间其余处理线程等待，之后直接命中缓存；
+	 * 判空与查询在同一把锁内，避免其他线程看到已取空的队列后各自查询
+	 */
+	private void prefetch() {
+		if (!batched) {
+			return;
+		}
+		synchronized (pendingKeys) {
+			if (pendingKeys.isEmpty()) {
+				return;
+			}
+			Set<K> keySet = Sets.newHashSet();
+			for (K key = pendingKeys.poll(); null != key; key = pendingKeys.poll()) {
+				keySet.add(key);
+			}
+			if (!keySet.isEmpty()) {
+				lookup.getAll(keySet);
+			}
+		}
+	}
+
+	@Override
+	public void beforeRead() {
+	}
+
+	@Override
+	public void afterRead(I item) {
+		if (batched) {
+			K key = keyExtractor.apply(item);
+			if (null != key) {
+				pendingKeys.add(key);
+			}
+		}
+	}
+
+	@Override
+	public void onReadError(Exception ex) {
+	}
+
+	public void setLookup(CachingLookup<K, V> lookup) {
+		this.lookup = lookup;
+	}
+
+	public void setKeyExtractor(Function<? super I, K> keyExtractor) {
+		this.keyExtractor = keyExtractor;
+	}
+
+	/**
+	 * @param batched 是否按chunk批量预取
+	 */
+	public void setBatched(boolean batched) {
+		this.batched = batched;
+	}
+
+}
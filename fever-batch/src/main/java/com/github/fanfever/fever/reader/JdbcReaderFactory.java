@@ -0,0 +1,151 @@
+package com.github.fanfever.fever.reader;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.PagingQueryProvider;
+import org.springframework.batch.item.database.support.SqlPagingQueryProviderFactoryBean;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.util.Assert;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Maps;
+
+/**
+ * 同一查询条件创建两种reader
+ * 
+ * {@link #paging()}: keyset分页，首页之后按(sortKey) > 上页最后一行取数，不使用OFFSET；
+ * sortKey按添加顺序组成复合键，应为有索引且组合唯一的列，并出现在selectClause中
+ * 
+ * {@link #cursor()}: 单条查询流式读取，内存占用与表大小无关。MySQL需要
+ * fetchSize为{@link #STREAMING_FETCH_SIZE}(逐行流式)，或url中设置useCursorFetch=true后使用正数fetchSize(服务端游标)；
+ * 整个step期间占用一个连接，restart时从头读取并跳过已提交的行
+ * 
+ * pageSize为每次查询的行数，fetchSize为驱动每次网络往返的行数，两者独立配置
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class JdbcReaderFactory<T> {
+
+	/**
+	 * MySQL驱动逐行流式读取
+	 */
+	public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+	private final DataSource dataSource;
+	private final RowMapper<T> rowMapper;
+	private String selectClause;
+	private String fromClause;
+	private String whereClause;
+	private final Map<String, Order> sortKeys = Maps.newLinkedHashMap();
+	private final Map<String, Object> parameterValues = Maps.newHashMap();
+	private int pageSize = 1000;
+	private int fetchSize = 1000;
+
+	private JdbcReaderFactory(DataSource dataSource, RowMapper<T> rowMapper) {
+		this.dataSource = dataSource;
+		this.rowMapper = rowMapper;
+	}
+
+	public static <T> JdbcReaderFactory<T> of(DataSource dataSource, RowMapper<T> rowMapper) {
+		return new JdbcReaderFactory<T>(dataSource, rowMapper);
+	}
+
+	public JdbcReaderFactory<T> select(String selectClause) {
+		this.selectClause = selectClause;
+		return this;
+	}
+
+	public JdbcReaderFactory<T> from(String fromClause) {
+		this.fromClause = fromClause;
+		return this;
+	}
+
+	/**
+	 * @param whereClause 不含WHERE，可使用:name参数
+	 */
+	public JdbcReaderFactory<T> where(String whereClause) {
+		this.whereClause = whereClause;
+		return this;
+	}
+
+	public JdbcReaderFactory<T> sortKey(String column, Order order) {
+		this.sortKeys.put(column, order);
+		return this;
+	}
+
+	public JdbcReaderFactory<T> parameter(String name, Object value) {
+		this.parameterValues.put(name, value);
+		return this;
+	}
+
+	public JdbcReaderFactory<T> pageSize(int pageSize) {
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	public JdbcReaderFactory<T> fetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
+	/**
+	 * @return keyset分页reader，分页方言由dataSource决定
+	 */
+	public JdbcPagingItemReader<T> paging() throws Exception {
+		Assert.notEmpty(sortKeys, "sortKey is required");
+		SqlPagingQueryProviderFactoryBean queryProviderFactory = new SqlPagingQueryProviderFactoryBean();
+		queryProviderFactory.setDataSource(dataSource);
+		queryProviderFactory.setSelectClause(selectClause);
+		queryProviderFactory.setFromClause(fromClause);
+		queryProviderFactory.setWhereClause(whereClause);
+		queryProviderFactory.setSortKeys(sortKeys);
+
+		JdbcPagingItemReader<T> reader = new JdbcPagingItemReader<T>();
+		reader.setDataSource(dataSource);
+		reader.setPageSize(pageSize);
+		reader.setFetchSize(fetchSize);
+		reader.setParameterValues(parameterValues);
+		reader.setRowMapper(rowMapper);
+		reader.setQueryProvider((PagingQueryProvider) queryProviderFactory.getObject());
+		return reader;
+	}
+
+	/**
+	 * @return 流式cursor reader，按sortKey排序
+	 */
+	public JdbcCursorItemReader<T> cursor() {
+		StringBuilder sql = new StringBuilder("SELECT ").append(selectClause).append(" FROM ").append(fromClause);
+		if (null != whereClause) {
+			sql.append(" WHERE ").append(whereClause);
+		}
+		if (!sortKeys.isEmpty()) {
+			sql.append(" ORDER BY ").append(Joiner.on(", ").join(sortKeys.entrySet().stream()
+					.map(e -> e.getKey() + (Order.DESCENDING == e.getValue() ? " DESC" : " ASC")).iterator()));
+		}
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql.toString());
+		MapSqlParameterSource parameterSource = new MapSqlParameterSource(parameterValues);
+
+		JdbcCursorItemReader<T> reader = new JdbcCursorItemReader<T>();
+		reader.setDataSource(dataSource);
+		reader.setSql(NamedParameterUtils.substituteNamedParameters(parsedSql, parameterSource));
+		reader.setPreparedStatementSetter(
+				new ArgumentPreparedStatementSetter(NamedParameterUtils.buildValueArray(parsedSql, parameterSource, null)));
+		reader.setFetchSize(fetchSize);
+		// 流式结果集不支持rs.getRow()，不能校验cursor位置
+		reader.setVerifyCursorPosition(STREAMING_FETCH_SIZE != fetchSize);
+		reader.setRowMapper(rowMapper);
+		return reader;
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.github.fanfever.fever.writer;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fanfever.fever.command.DocumentCommand;
+import com.github.fanfever.fever.command.bulk.DocumentSerializer;
+import com.github.fanfever.fever.command.enums.DocumentCommandType;
+import com.github.fanfever.fever.command.enums.RefreshPolicy;
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import com.github.fanfever.fever.command.response.BulkItemResult;
+import com.github.fanfever.fever.command.response.BulkResult;
+import com.google.common.collect.Lists;
+
+/**
+ * 将chunk写入elasticsearch
+ * 
+ * chunk内的document先序列化，再按action数和字节数切分为多个bulk，由{@link DocumentCommand}发送；
+ * 任一document失败时抛出{@link WriteFailedException}，交由step的retry/skip处理。
+ * SAVE/DELETE按id幂等，restart时重放最后一个未提交的chunk不会产生重复document
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class ElasticsearchItemWriter<T> implements ItemWriter<T>, InitializingBean {
+
+	Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private DocumentCommand documentCommand;
+	private DocumentSerializer documentSerializer;
+	private Function<? super T, DocumentCommandRequest> requestMapper;
+	private RefreshPolicy refreshPolicy = RefreshPolicy.NONE;
+	private int bulkActions = 1000;
+	private long bulkSizeInBytes = 5 * 1024 * 1024;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(documentCommand, "documentCommand is required");
+		Assert.notNull(documentSerializer, "objectMapper is required");
+		Assert.notNull(requestMapper, "requestMapper is required");
+		Assert.isTrue(bulkActions > 0, "bulkActions must be greater than 0");
+		Assert.isTrue(bulkSizeInBytes > 0, "bulkSizeInBytes must be greater than 0");
+	}
+
+	@Override
+	public void write(List<? extends T> items) throws Exception {
+		List<DocumentCommandRequest> bulkList = Lists.newArrayListWithCapacity(Math.min(items.size(), bulkActions));
+		long bulkBytes = 0;
+		for (T item : items) {
+			DocumentCommandRequest request = requestMapper.apply(item);
+			if (null == request) {
+				continue;
+			}
+			long bytes = 0;
+			if (DocumentCommandType.DELETE != request.getCommandType()) {
+				BytesReference source = documentSerializer.serialize(request);
+				request.setSource(source);
+				bytes = null == source ? 0 : source.length();
+			}
+			if (!bulkList.isEmpty() && (bulkList.size() >= bulkActions || bulkBytes + bytes > bulkSizeInBytes)) {
+				execute(bulkList, bulkBytes);
+				bulkList = Lists.newArrayListWithCapacity(bulkActions);
+				bulkBytes = 0;
+			}
+			bulkList.add(request);
+			bulkBytes += bytes;
+		}
+		if (!bulkList.isEmpty()) {
+			execute(bulkList, bulkBytes);
+		}
+	}
+
+	private void execute(List<DocumentCommandRequest> bulkList, long bulkBytes) {
+		BulkResult bulkResult = documentCommand.executeForResult(bulkList, refreshPolicy);
+		logger.debug("bulk actions:{}, bytes:{}", bulkList.size(), bulkBytes);
+		if (bulkResult.hasFailures()) {
+			List<BulkItemResult> failedItemList = bulkResult.getFailedItemList();
+			BulkItemResult first = failedItemList.get(0);
+			throw new WriteFailedException(String.format("bulk failed, failed:%d/%d, first id:%s, reason:%s",
+					failedItemList.size(), bulkList.size(), first.getId(), first.getFailureMessage()));
+		}
+	}
+
+	public void setDocumentCommand(DocumentCommand documentCommand) {
+		this.documentCommand = documentCommand;
+	}
+
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.documentSerializer = new DocumentSerializer(objectMapper);
+	}
+
+	/**
+	 * @param requestMapper item转为{@link DocumentCommandRequest}，返回null时忽略该item
+	 */
+	public void setRequestMapper(Function<? super T, DocumentCommandRequest> requestMapper) {
+		this.requestMapper = requestMapper;
+	}
+
+	public void setRefreshPolicy(RefreshPolicy refreshPolicy) {
+		this.refreshPolicy = refreshPolicy;
+	}
+
+	/**
+	 * @param bulkActions 单个bulk最大document数
+	 */
+	public void setBulkActions(int bulkActions) {
+		this.bulkActions = bulkActions;
+	}
+
+	/**
+	 * @param bulkSizeInBytes 单个bulk最大source字节数，单个document超过时独占一个bulk
+	 */
+	public void setBulkSizeInBytes(long bulkSizeInBytes) {
+		this.bulkSizeInBytes = bulkSizeInBytes;
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.github.fanfever.fever.writer;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * 将多个item合并为一条SQL写入，每条SQL最多statementBatchSize行，与chunk大小无关
+ * 
+ * UPSERT: INSERT INTO t (k, a) VALUES (?, ?), (?, ?) ON DUPLICATE KEY UPDATE a = VALUES(a)
+ * UPDATE: UPDATE t SET a = CASE k WHEN ? THEN ? ... END WHERE k IN (?, ...)，只支持单列主键，
+ * chunk内主键重复时只有第一个生效。assertUpdates为true(默认)时，更新行数少于不同主键数则抛出
+ * {@link EmptyResultDataAccessException}，与JdbcBatchItemWriter一致；依赖驱动返回匹配行数(mysql-connector默认，
+ * useAffectedRows=true时不适用)
+ * 
+ * 取值使用{@link PropertyExtractor}，列名默认为属性名的下划线形式
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class MultiRowItemWriter<T> implements ItemWriter<T>, InitializingBean {
+
+	public enum Mode {
+		UPSERT, UPDATE
+	}
+
+	private JdbcTemplate jdbcTemplate;
+	private Class<T> itemClass;
+	private String table;
+	private Mode mode = Mode.UPSERT;
+	private int statementBatchSize = 500;
+	private boolean assertUpdates = true;
+	private final List<String> keyColumns = Lists.newArrayList();
+	private final List<String> valueColumns = Lists.newArrayList();
+	private final Map<String, String> propertyMap = Maps.newHashMap();
+
+	private List<Function<Object, Object>> keyGetters;
+	private List<Function<Object, Object>> valueGetters;
+	/**
+	 * 行数 -> SQL
+	 */
+	private final Map<Integer, String> sqlCache = new ConcurrentHashMap<Integer, String>();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "dataSource is required");
+		Assert.notNull(itemClass, "itemClass is required");
+		Assert.hasText(table, "table is required");
+		Assert.notEmpty(keyColumns, "keyColumn is required");
+		Assert.notEmpty(valueColumns, "valueColumn is required");
+		Assert.isTrue(statementBatchSize > 0, "statementBatchSize must be greater than 0");
+		Assert.isTrue(Mode.UPDATE != mode || 1 == keyColumns.size(), "UPDATE mode supports single key column only");
+		PropertyExtractor<T> extractor = PropertyExtractor.of(itemClass);
+		keyGetters = keyColumns.stream().map(column -> extractor.getter(propertyMap.get(column))).collect(Collectors.toList());
+		valueGetters = valueColumns.stream().map(column -> extractor.getter(propertyMap.get(column))).collect(Collectors.toList());
+	}
+
+	@Override
+	public void write(List<? extends T> items) throws Exception {
+		for (List<? extends T> statementItems : Lists.partition(items, statementBatchSize)) {
+			int updated = jdbcTemplate.update(sqlCache.computeIfAbsent(statementItems.size(), this::sql), arguments(statementItems));
+			if (Mode.UPDATE == mode && assertUpdates) {
+				Function<Object, Object> keyGetter = keyGetters.get(0);
+				long keys = statementItems.stream().map(item -> value(keyGetter, item)).distinct().count();
+				if (updated < keys) {
+					throw new EmptyResultDataAccessException("Statement of " + statementItems.size() + " items (" + keys
+							+ " distinct keys) updated only " + updated + " rows in " + table, (int) keys);
+				}
+			}
+		}
+	}
+
+	private Object[] arguments(List<? extends T> items) {
+		List<Object> arguments = Lists.newArrayListWithCapacity(items.size() * (keyColumns.size() + valueColumns.size()));
+		if (Mode.UPSERT == mode) {
+			for (T item : items) {
+				keyGetters.forEach(getter -> arguments.add(value(getter, item)));
+				valueGetters.forEach(getter -> arguments.add(value(getter, item)));
+			}
+		} else {
+			Function<Object, Object> keyGetter = keyGetters.get(0);
+			for (Function<Object, Object> getter : valueGetters) {
+				for (T item : items) {
+					arguments.add(value(keyGetter, item));
+					arguments.add(value(getter, item));
+				}
+			}
+			items.forEach(item -> arguments.add(value(keyGetter, item)));
+		}
+		return arguments.toArray();
+	}
+
+	private String sql(int rows) {
+		if (Mode.UPSERT == mode) {
+			List<String> columns = Lists.newArrayList(keyColumns);
+			columns.addAll(valueColumns);
+			String row = "(" + placeholders(columns.size()) + ")";
+			return "INSERT INTO " + table + " (" + Joiner.on(", ").join(columns) + ") VALUES "
+					+ Joiner.on(", ").join(Collections.nCopies(rows, row)) + " ON DUPLICATE KEY UPDATE "
+					+ valueColumns.stream().map(column -> column + " = VALUES(" + column + ")").collect(Collectors.joining(", "));
+		}
+		String keyColumn = keyColumns.get(0);
+		String whenThen = Strings.repeat(" WHEN ? THEN ?", rows);
+		return "UPDATE " + table + " SET "
+				+ valueColumns.stream().map(column -> column + " = CASE " + keyColumn + whenThen + " END").collect(Collectors.joining(", "))
+				+ " WHERE " + keyColumn + " IN (" + placeholders(rows) + ")";
+	}
+
+	private static String placeholders(int count) {
+		return Joiner.on(", ").join(Collections.nCopies(count, "?"));
+	}
+
+	/**
+	 * mysql-connector 5.1不支持java.time参数
+	 */
+	private static Object value(Function<Object, Object> getter, Object item) {
+		Object value = getter.apply(item);
+		if (value instanceof LocalDateTime) {
+			return Timestamp.valueOf((LocalDateTime) value);
+		}
+		if (value instanceof LocalDate) {
+			return Date.valueOf((LocalDate) value);
+		}
+		return value;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	public void setItemClass(Class<T> itemClass) {
+		this.itemClass = itemClass;
+	}
+
+	public void setTable(String table) {
+		this.table = table;
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * @param statementBatchSize 单条SQL最大行数
+	 */
+	public void setStatementBatchSize(int statementBatchSize) {
+		this.statementBatchSize = statementBatchSize;
+	}
+
+	/**
+	 * @param assertUpdates UPDATE模式下是否要求每个主键都更新到一行
+	 */
+	public void setAssertUpdates(boolean assertUpdates) {
+		this.assertUpdates = assertUpdates;
+	}
+
+	/**
+	 * @param column 主键列，属性名为列名的驼峰形式
+	 */
+	public void addKeyColumn(String column) {
+		addKeyColumn(column, CaseFormat.LOWER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, column));
+	}
+
+	public void addKeyColumn(String column, String property) {
+		keyColumns.add(column);
+		propertyMap.put(column, property);
+	}
+
+	/**
+	 * @param column 写入列，属性名为列名的驼峰形式
+	 */
+	public void addValueColumn(String column) {
+		addValueColumn(column, CaseFormat.LOWER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, column));
+	}
+
+	public void addValueColumn(String column, String property) {
+		valueColumns.add(column);
+		propertyMap.put(column, property);
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.github.fanfever.fever.writer;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.util.ClassUtils;
+
+import com.google.common.collect.Maps;
+
+/**
+ * 按类缓存的getter访问器，每个getter经{@link LambdaMetafactory}生成一次{@link Function}，
+ * 之后取值为普通接口调用，不再经过反射
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class PropertyExtractor<T> {
+
+	private static final Map<Class<?>, PropertyExtractor<?>> CACHE = new ConcurrentHashMap<Class<?>, PropertyExtractor<?>>();
+
+	private final Class<T> itemClass;
+	private final Map<String, Function<Object, Object>> getterMap;
+
+	private PropertyExtractor(Class<T> itemClass) {
+		this.itemClass = itemClass;
+		this.getterMap = compile(itemClass);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> PropertyExtractor<T> of(Class<T> itemClass) {
+		return (PropertyExtractor<T>) CACHE.computeIfAbsent(itemClass, PropertyExtractor::new);
+	}
+
+	/**
+	 * @param property 属性名
+	 * @return 属性访问器
+	 * @throws IllegalArgumentException 属性不存在或没有public getter
+	 */
+	public Function<Object, Object> getter(String property) {
+		Function<Object, Object> getter = getterMap.get(property);
+		if (null == getter) {
+			throw new IllegalArgumentException("property not readable: " + itemClass.getName() + "." + property);
+		}
+		return getter;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Function<Object, Object>> compile(Class<?> itemClass) {
+		BeanInfo beanInfo;
+		try {
+			beanInfo = Introspector.getBeanInfo(itemClass, Object.class);
+		} catch (IntrospectionException e) {
+			throw new IllegalArgumentException("introspect fail: " + itemClass.getName(), e);
+		}
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		Map<String, Function<Object, Object>> getterMap = Maps.newHashMap();
+		for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+			Method readMethod = propertyDescriptor.getReadMethod();
+			if (null == readMethod) {
+				continue;
+			}
+			try {
+				MethodHandle getter = lookup.unreflect(readMethod);
+				CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+						MethodType.methodType(Object.class, Object.class), getter,
+						MethodType.methodType(ClassUtils.resolvePrimitiveIfNecessary(readMethod.getReturnType()),
+								readMethod.getDeclaringClass()));
+				getterMap.put(propertyDescriptor.getName(), (Function<Object, Object>) callSite.getTarget().invoke());
+			} catch (Throwable t) {
+				throw new IllegalArgumentException("compile getter fail: " + readMethod, t);
+			}
+		}
+		return getterMap;
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.github.fanfever.fever.config.job;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.config.EnableIntegration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.github.fanfever.fever.partition.ColumnRangePartitioner;
+
+/**
+ * channel=memory时manager与worker在同一JVM中，验证分区全部由worker线程执行且并发不超过worker.concurrency
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = { RemotePartitionJobConfiguration.class, RemotePartitionJobConfigurationTest.TestConfiguration.class })
+@TestPropertySource(properties = { "fever.batch.remote-partition.channel=memory", "fever.batch.remote-partition.grid-size=4",
+		"fever.batch.remote-partition.timeout-millis=60000", "fever.batch.remote-partition.poll-interval-millis=20",
+		"fever.batch.remote-partition.worker.enabled=true", "fever.batch.remote-partition.worker.concurrency=2" })
+public class RemotePartitionJobConfigurationTest {
+
+	private static final AtomicInteger RUNNING = new AtomicInteger();
+	private static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+	private static final Set<String> THREAD_NAMES = ConcurrentHashMap.newKeySet();
+
+	@Autowired
+	private JobLauncher jobLauncher;
+
+	@Autowired
+	@Qualifier("remotePartitionJob")
+	private Job remotePartitionJob;
+
+	@Test
+	public void workersExecuteAllPartitionsWithinConcurrency() throws Exception {
+		JobExecution jobExecution = jobLauncher.run(remotePartitionJob, new JobParameters());
+
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		long workerSteps = jobExecution.getStepExecutions().stream().map(StepExecution::getStepName)
+				.filter(name -> name.startsWith("simplePartitionWorkerStep:")).count();
+		assertThat(workerSteps).isEqualTo(4);
+		assertThat(MAX_RUNNING.get()).isLessThanOrEqualTo(2);
+		assertThat(THREAD_NAMES).isNotEmpty();
+		THREAD_NAMES.forEach(name -> assertThat(name).startsWith("partition-worker-"));
+	}
+
+	@Configuration
+	@EnableBatchProcessing
+	@EnableIntegration
+	static class TestConfiguration {
+
+		@Autowired
+		private StepBuilderFactory stepBuilderFactory;
+
+		@Bean
+		public DataSource dataSource() {
+			DataSource dataSource = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+					.addScript("classpath:org/springframework/batch/core/schema-h2.sql").build();
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+			jdbcTemplate.execute("CREATE TABLE user (id INT PRIMARY KEY)");
+			for (int id = 1; id <= 8; id++) {
+				jdbcTemplate.update("INSERT INTO user VALUES (?)", id);
+			}
+			return dataSource;
+		}
+
+		@Bean
+		public ColumnRangePartitioner simplePartitioner() {
+			ColumnRangePartitioner partitioner = new ColumnRangePartitioner();
+			partitioner.setDataSource(dataSource());
+			partitioner.setTable("user");
+			partitioner.setColumn("id");
+			return partitioner;
+		}
+
+		/**
+		 * 代替真实的worker step，记录并发数和执行线程
+		 */
+		@Bean
+		public Step simplePartitionWorkerStep() {
+			return stepBuilderFactory.get("simplePartitionWorkerStep").tasklet((contribution, chunkContext) -> {
+				THREAD_NAMES.add(Thread.currentThread().getName());
+				MAX_RUNNING.accumulateAndGet(RUNNING.incrementAndGet(), Math::max);
+				try {
+					TimeUnit.MILLISECONDS.sleep(200);
+				} finally {
+					RUNNING.decrementAndGet();
+				}
+				return RepeatStatus.FINISHED;
+			}).build();
+		}
+
+	}
+
+}
@@ -0,0 +1,143 @@
+package com.github.fanfever.fever.listener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fanfever.fever.processor.AsyncItemProcessingException;
+import com.google.common.collect.Maps;
+
+/**
+ * H2 MySQL模式下验证dead letter记录原始item、独立事务写入且只写入本step的队列
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class StepSkipListenerTest {
+
+	private DriverManagerDataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+	private SkipRetryRecorder recorder;
+	private StepSkipListener<String, Future<String>> listener;
+
+	@Before
+	public void setUp() {
+		// 每次getConnection都是新连接，REQUIRES_NEW需要独立连接
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:dead_letter;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE batch_dead_letter (id BIGINT AUTO_INCREMENT PRIMARY KEY, job_name VARCHAR(100), step_name VARCHAR(100), "
+				+ "step_execution_id BIGINT, phase VARCHAR(16), item TEXT, exception_class VARCHAR(255), exception_message VARCHAR(1000), create_time DATETIME)");
+		recorder = new SkipRetryRecorder();
+		recorder.setDataSource(dataSource);
+		ReflectionTestUtils.setField(recorder, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(recorder, "deadLetterEnabled", true);
+		ReflectionTestUtils.setField(recorder, "deadLetterBatchSize", 100);
+		listener = new StepSkipListener<String, Future<String>>(recorder);
+	}
+
+	@After
+	public void tearDown() {
+		jdbcTemplate.execute("DROP TABLE batch_dead_letter");
+	}
+
+	@Test
+	public void writeSkipRecordsInputItemOfFailedFuture() {
+		ReflectionTestUtils.setField(recorder, "deadLetterBatchSize", 1);
+		IllegalStateException cause = new IllegalStateException("remote fail");
+		CompletableFuture<String> failed = new CompletableFuture<String>();
+		failed.completeExceptionally(new AsyncItemProcessingException("user-1", cause));
+
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+		StepSynchronizationManager.register(stepExecution(1L));
+		try {
+			listener.onSkipInWrite(failed, cause);
+		} finally {
+			StepSynchronizationManager.close();
+			// chunk回滚不影响已写入的dead letter
+			transactionManager.rollback(status);
+		}
+
+		assertThat(jdbcTemplate.queryForObject("SELECT item FROM batch_dead_letter", String.class)).isEqualTo("\"user-1\"");
+		assertThat(jdbcTemplate.queryForObject("SELECT exception_class FROM batch_dead_letter", String.class))
+				.isEqualTo(IllegalStateException.class.getName());
+	}
+
+	@Test
+	public void writeSkipRecordsResultOfCompletedFuture() {
+		StepExecution stepExecution = stepExecution(1L);
+		StepSynchronizationManager.register(stepExecution);
+		try {
+			listener.onSkipInWrite(CompletableFuture.completedFuture("user-1"), new IllegalStateException("write fail"));
+		} finally {
+			StepSynchronizationManager.close();
+		}
+		recorder.afterStep(stepExecution);
+
+		assertThat(jdbcTemplate.queryForObject("SELECT item FROM batch_dead_letter", String.class)).isEqualTo("\"user-1\"");
+	}
+
+	@Test
+	public void afterStepFlushesOnlyItsOwnStep() {
+		StepExecution first = stepExecution(1L);
+		StepExecution second = stepExecution(2L);
+		for (StepExecution stepExecution : new StepExecution[] { first, second }) {
+			StepSynchronizationManager.register(stepExecution);
+			try {
+				listener.onSkipInProcess("user-" + stepExecution.getId(), new IllegalStateException("process fail"));
+			} finally {
+				StepSynchronizationManager.close();
+			}
+		}
+
+		recorder.afterStep(first);
+		assertThat(jdbcTemplate.queryForList("SELECT step_execution_id FROM batch_dead_letter", Long.class)).containsExactly(1L);
+
+		recorder.afterStep(second);
+		assertThat(jdbcTemplate.queryForList("SELECT step_execution_id FROM batch_dead_letter ORDER BY id", Long.class)).containsExactly(1L, 2L);
+	}
+
+	@Test
+	public void afterStepFlushesDeadLettersWithoutStepContext() {
+		listener.onSkipInProcess("user-1", new IllegalStateException("process fail"));
+
+		recorder.afterStep(stepExecution(1L));
+
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM batch_dead_letter", Integer.class)).isEqualTo(1);
+	}
+
+	@Test
+	public void publishesCountsAsMetrics() {
+		listener.onSkipInProcess("user-1", new IllegalStateException("process fail"));
+		listener.onSkipInProcess("user-2", new IllegalStateException("process fail"));
+
+		Map<String, Number> metricMap = Maps.newHashMap();
+		recorder.metrics().forEach(metric -> metricMap.put(metric.getName(), metric.getValue()));
+		assertThat(metricMap).containsEntry("batch.skipRetry.process." + IllegalStateException.class.getName(), 2L);
+	}
+
+	private static StepExecution stepExecution(Long id) {
+		JobExecution jobExecution = new JobExecution(new JobInstance(1L, "job"), 1L, new JobParameters(), null);
+		return new StepExecution("step", jobExecution, id);
+	}
+
+}
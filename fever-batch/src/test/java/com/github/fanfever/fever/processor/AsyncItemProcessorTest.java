@@ -0,0 +1,142 @@
+package com.github.fanfever.fever.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import com.github.fanfever.fever.processor.CircuitBreaker.CircuitBreakerOpenException;
+
+/**
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class AsyncItemProcessorTest {
+
+	private final ExecutorService caller = Executors.newSingleThreadExecutor();
+
+	@After
+	public void tearDown() {
+		caller.shutdownNow();
+	}
+
+	@Test
+	public void blocksWhenMaxInFlightReached() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		AsyncItemProcessor<Integer, Integer> processor = processor(item -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			release.await();
+			running.decrementAndGet();
+			return item;
+		}, 2);
+
+		Future<Integer> first = processor.process(1);
+		Future<Integer> second = processor.process(2);
+		Future<Future<Integer>> third = caller.submit(() -> processor.process(3));
+		TimeUnit.MILLISECONDS.sleep(200);
+		assertThat(third.isDone()).as("process blocks while 2 items are in flight").isFalse();
+
+		release.countDown();
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+		assertThat(third.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS)).isEqualTo(3);
+		assertThat(maxRunning.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void failsFastWhenCircuitBreakerOpen() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		AsyncItemProcessor<Integer, Integer> processor = processor(item -> {
+			calls.incrementAndGet();
+			throw new IllegalStateException("remote fail");
+		}, 2);
+		processor.setCircuitBreaker(new CircuitBreaker(1, TimeUnit.MINUTES.toMillis(1)));
+
+		Throwable first = causeOf(processor.process(1));
+		assertThat(first).isInstanceOf(AsyncItemProcessingException.class).hasCauseInstanceOf(IllegalStateException.class);
+		assertThat(((AsyncItemProcessingException) first).getItem()).isEqualTo(1);
+		Throwable second = causeOf(processor.process(2));
+		assertThat(second).isInstanceOf(AsyncItemProcessingException.class).hasCauseInstanceOf(CircuitBreakerOpenException.class);
+		assertThat(((AsyncItemProcessingException) second).getItem()).isEqualTo(2);
+		assertThat(calls.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void registersStepExecutionOnWorkerThread() throws Exception {
+		StepExecution stepExecution = new StepExecution("step", new JobExecution(1L));
+		AtomicReference<StepExecution> workerStepExecution = new AtomicReference<StepExecution>();
+		AsyncItemProcessor<Integer, Integer> processor = processor(item -> {
+			workerStepExecution.set(StepSynchronizationManager.getContext().getStepExecution());
+			return item;
+		}, 2);
+
+		StepSynchronizationManager.register(stepExecution);
+		try {
+			processor.process(1).get(5, TimeUnit.SECONDS);
+		} finally {
+			StepSynchronizationManager.close();
+		}
+		assertThat(workerStepExecution.get()).isSameAs(stepExecution);
+	}
+
+	@Test
+	public void cancelInterruptsWorker() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		AsyncItemProcessor<Integer, Integer> processor = processor(item -> {
+			started.countDown();
+			try {
+				TimeUnit.MINUTES.sleep(1);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+				throw e;
+			}
+			return item;
+		}, 1);
+
+		Future<Integer> future = processor.process(1);
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(future.cancel(true)).isTrue();
+
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+		// 名额已释放
+		assertThat(caller.submit(() -> processor.process(2)).get(5, TimeUnit.SECONDS)).isNotNull();
+	}
+
+	private static AsyncItemProcessor<Integer, Integer> processor(ItemProcessor<Integer, Integer> delegate, int maxInFlight) throws Exception {
+		AsyncItemProcessor<Integer, Integer> processor = new AsyncItemProcessor<Integer, Integer>();
+		processor.setDelegate(delegate);
+		processor.setTaskExecutor(new SimpleAsyncTaskExecutor("async-test-"));
+		processor.setMaxInFlight(maxInFlight);
+		processor.afterPropertiesSet();
+		return processor;
+	}
+
+	private static Throwable causeOf(Future<Integer> future) throws InterruptedException, TimeoutException {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("future should fail");
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+
+}
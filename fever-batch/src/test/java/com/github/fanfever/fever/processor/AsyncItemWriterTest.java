@@ -0,0 +1,91 @@
+package com.github.fanfever.fever.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class AsyncItemWriterTest {
+
+	private final List<String> writtenList = Lists.newArrayList();
+	private final AsyncItemWriter<String> writer = new AsyncItemWriter<String>();
+
+	@Before
+	public void setUp() throws Exception {
+		writer.setDelegate(items -> writtenList.addAll(items));
+		writer.setTimeoutMillis(100);
+		writer.afterPropertiesSet();
+	}
+
+	@Test
+	public void writesInChunkOrderAndFiltersNull() throws Exception {
+		CompletableFuture<String> first = new CompletableFuture<String>();
+		CompletableFuture<String> second = new CompletableFuture<String>();
+		CompletableFuture<String> third = new CompletableFuture<String>();
+		CompletableFuture.runAsync(() -> {
+			third.complete("c");
+			second.complete(null);
+			first.complete("a");
+		});
+
+		writer.write(Arrays.asList(first, second, third));
+
+		assertThat(writtenList).containsExactly("a", "c");
+	}
+
+	@Test
+	public void rethrowsProcessingException() throws Exception {
+		CompletableFuture<String> failed = new CompletableFuture<String>();
+		failed.completeExceptionally(new IllegalStateException("remote fail"));
+
+		try {
+			writer.write(Arrays.asList(CompletableFuture.completedFuture("a"), failed));
+			throw new AssertionError("write should fail");
+		} catch (IllegalStateException e) {
+			assertThat(e).hasMessage("remote fail");
+		}
+		assertThat(writtenList).isEmpty();
+	}
+
+	@Test
+	public void rethrowsCauseOfAsyncItemProcessingException() throws Exception {
+		CompletableFuture<String> failed = new CompletableFuture<String>();
+		failed.completeExceptionally(new AsyncItemProcessingException("a", new IllegalStateException("remote fail")));
+
+		try {
+			writer.write(Arrays.asList(failed));
+			throw new AssertionError("write should fail");
+		} catch (IllegalStateException e) {
+			assertThat(e).hasMessage("remote fail");
+		}
+	}
+
+	@Test
+	public void cancelsItemOnTimeout() throws Exception {
+		CompletableFuture<String> pending = new CompletableFuture<String>();
+		List<Future<String>> items = Arrays.asList(pending);
+
+		try {
+			writer.write(items);
+			throw new AssertionError("write should time out");
+		} catch (TimeoutException e) {
+			// expected
+		}
+		assertThat(pending.isCancelled()).isTrue();
+		assertThat(writtenList).isEmpty();
+	}
+
+}
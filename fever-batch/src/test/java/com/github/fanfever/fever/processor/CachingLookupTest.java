@@ -0,0 +1,85 @@
+package com.github.fanfever.fever.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class CachingLookupTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentGetLoadsOnce() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+		CachingLookup<Integer, String> lookup = new CachingLookup<Integer, String>(key -> {
+			loads.incrementAndGet();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return "user-" + key;
+		}, null, 100, TimeUnit.MINUTES.toMillis(1));
+
+		List<Future<String>> futureList = Lists.newArrayList();
+		for (int i = 0; i < 8; i++) {
+			futureList.add(executor.submit(() -> lookup.get(1)));
+		}
+		TimeUnit.MILLISECONDS.sleep(200);
+		release.countDown();
+
+		for (Future<String> future : futureList) {
+			assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("user-1");
+		}
+		assertThat(loads.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void entriesExpireAfterTtl() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CachingLookup<Integer, String> lookup = new CachingLookup<Integer, String>(key -> "user-" + loads.incrementAndGet(), null, 100, 100);
+
+		assertThat(lookup.get(1)).isEqualTo("user-1");
+		assertThat(lookup.get(1)).isEqualTo("user-1");
+		TimeUnit.MILLISECONDS.sleep(200);
+
+		assertThat(lookup.get(1)).isEqualTo("user-2");
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void nullValueIsCached() {
+		AtomicInteger loads = new AtomicInteger();
+		CachingLookup<Integer, String> lookup = new CachingLookup<Integer, String>(key -> {
+			loads.incrementAndGet();
+			return null;
+		}, null, 100, TimeUnit.MINUTES.toMillis(1));
+
+		assertThat(lookup.get(1)).isNull();
+		assertThat(lookup.get(1)).isNull();
+		assertThat(loads.get()).isEqualTo(1);
+	}
+
+}
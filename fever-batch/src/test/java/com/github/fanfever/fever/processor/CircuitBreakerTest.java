@@ -0,0 +1,81 @@
+package com.github.fanfever.fever.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class CircuitBreakerTest {
+
+	private static final long OPEN_MILLIS = 50;
+
+	private final CircuitBreaker circuitBreaker = new CircuitBreaker(3, OPEN_MILLIS);
+
+	@Test
+	public void opensAfterConsecutiveFailures() {
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		assertThat(circuitBreaker.isOpen()).isFalse();
+		assertThat(circuitBreaker.allowRequest()).isTrue();
+
+		circuitBreaker.recordFailure();
+		assertThat(circuitBreaker.isOpen()).isTrue();
+		assertThat(circuitBreaker.allowRequest()).isFalse();
+	}
+
+	@Test
+	public void successResetsConsecutiveFailures() {
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordSuccess();
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		assertThat(circuitBreaker.isOpen()).isFalse();
+	}
+
+	@Test
+	public void allowsSingleProbeAfterOpenMillis() throws InterruptedException {
+		open();
+		TimeUnit.MILLISECONDS.sleep(OPEN_MILLIS + 10);
+
+		assertThat(circuitBreaker.allowRequest()).isTrue();
+		assertThat(circuitBreaker.allowRequest()).isFalse();
+	}
+
+	@Test
+	public void probeSuccessCloses() throws InterruptedException {
+		open();
+		TimeUnit.MILLISECONDS.sleep(OPEN_MILLIS + 10);
+		assertThat(circuitBreaker.allowRequest()).isTrue();
+
+		circuitBreaker.recordSuccess();
+		assertThat(circuitBreaker.isOpen()).isFalse();
+		assertThat(circuitBreaker.allowRequest()).isTrue();
+		assertThat(circuitBreaker.allowRequest()).isTrue();
+	}
+
+	@Test
+	public void probeFailureReopens() throws InterruptedException {
+		open();
+		TimeUnit.MILLISECONDS.sleep(OPEN_MILLIS + 10);
+		assertThat(circuitBreaker.allowRequest()).isTrue();
+
+		circuitBreaker.recordFailure();
+		assertThat(circuitBreaker.isOpen()).isTrue();
+		assertThat(circuitBreaker.allowRequest()).isFalse();
+	}
+
+	private void open() {
+		for (int i = 0; i < 3; i++) {
+			circuitBreaker.recordFailure();
+		}
+		assertThat(circuitBreaker.isOpen()).isTrue();
+	}
+
+}
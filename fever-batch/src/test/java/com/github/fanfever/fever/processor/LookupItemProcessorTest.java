@@ -0,0 +1,97 @@
+package com.github.fanfever.fever.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class LookupItemProcessorTest {
+
+	private final AtomicInteger loads = new AtomicInteger();
+	private final List<Collection<Integer>> bulkLoadList = Lists.newArrayList();
+
+	@Test
+	public void batchedChunkLoadsDistinctKeysOnce() throws Exception {
+		LookupItemProcessor<Integer, Integer, String, String> processor = processor(true);
+		List<Integer> chunk = Arrays.asList(1, 2, 1, 3, 2);
+		chunk.forEach(processor::afterRead);
+
+		List<String> outputList = Lists.newArrayList();
+		for (Integer item : chunk) {
+			outputList.add(processor.process(item));
+		}
+
+		assertThat(outputList).containsExactly("1:user-1", "2:user-2", "1:user-1", "3:user-3", "2:user-2");
+		assertThat(bulkLoadList).hasSize(1);
+		assertThat(bulkLoadList.get(0)).containsOnly(1, 2, 3).hasSize(3);
+		assertThat(loads.get()).isZero();
+	}
+
+	@Test
+	public void batchedSkipsCachedKeys() throws Exception {
+		LookupItemProcessor<Integer, Integer, String, String> processor = processor(true);
+		processor.afterRead(1);
+		processor.process(1);
+		processor.afterRead(1);
+		processor.afterRead(2);
+		processor.process(1);
+		processor.process(2);
+
+		assertThat(bulkLoadList).hasSize(2);
+		assertThat(bulkLoadList.get(1)).containsOnly(2);
+	}
+
+	@Test
+	public void unbatchedLoadsPerKey() throws Exception {
+		LookupItemProcessor<Integer, Integer, String, String> processor = processor(false);
+		for (Integer item : Arrays.asList(1, 2, 1)) {
+			processor.afterRead(item);
+			processor.process(item);
+		}
+
+		assertThat(bulkLoadList).isEmpty();
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	private LookupItemProcessor<Integer, Integer, String, String> processor(boolean batched) throws Exception {
+		Function<Collection<Integer>, Map<Integer, String>> bulkLoader = keys -> {
+			bulkLoadList.add(Lists.newArrayList(keys));
+			Map<Integer, String> valueMap = Maps.newHashMap();
+			keys.forEach(key -> valueMap.put(key, "user-" + key));
+			return valueMap;
+		};
+		CachingLookup<Integer, String> lookup = new CachingLookup<Integer, String>(key -> {
+			loads.incrementAndGet();
+			return "user-" + key;
+		}, bulkLoader, 100, TimeUnit.MINUTES.toMillis(1));
+
+		LookupItemProcessor<Integer, Integer, String, String> processor = new LookupItemProcessor<Integer, Integer, String, String>() {
+
+			@Override
+			protected String merge(Integer item, String value) throws Exception {
+				return item + ":" + value;
+			}
+		};
+		processor.setLookup(lookup);
+		processor.setKeyExtractor(Function.identity());
+		processor.setBatched(batched);
+		processor.afterPropertiesSet();
+		return processor;
+	}
+
+}
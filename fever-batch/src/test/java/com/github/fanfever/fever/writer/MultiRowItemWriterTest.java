@@ -0,0 +1,132 @@
+package com.github.fanfever.fever.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.github.fanfever.fever.item.User;
+
+/**
+ * H2 MySQL模式下验证生成的SQL及参数顺序
+ * 
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class MultiRowItemWriterTest {
+
+	private SingleConnectionDataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void setUp() {
+		dataSource = new SingleConnectionDataSource("jdbc:h2:mem:multi_row;MODE=MySQL", "sa", "", true);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE user (id INT PRIMARY KEY, sex TINYINT, username VARCHAR(32), create_time TIMESTAMP, version INT)");
+		for (int id = 1; id <= 3; id++) {
+			jdbcTemplate.update("INSERT INTO user VALUES (?, 1, ?, NOW(), 1)", id, "user-" + id);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		jdbcTemplate.execute("DROP TABLE user");
+		dataSource.destroy();
+	}
+
+	@Test
+	public void updatesEachRowAcrossStatements() throws Exception {
+		MultiRowItemWriter<User> writer = writer(MultiRowItemWriter.Mode.UPDATE);
+		writer.addKeyColumn("id");
+		writer.addValueColumn("username");
+		writer.addValueColumn("version");
+		writer.setStatementBatchSize(2);
+		writer.afterPropertiesSet();
+
+		writer.write(Arrays.asList(user(3, "c", 30), user(1, "a", 10), user(2, "b", 20)));
+
+		assertUser(1, "a", 10);
+		assertUser(2, "b", 20);
+		assertUser(3, "c", 30);
+	}
+
+	@Test
+	public void duplicateKeyFirstWins() throws Exception {
+		MultiRowItemWriter<User> writer = writer(MultiRowItemWriter.Mode.UPDATE);
+		writer.addKeyColumn("id");
+		writer.addValueColumn("username");
+		writer.afterPropertiesSet();
+
+		writer.write(Arrays.asList(user(1, "first", 1), user(1, "second", 1)));
+
+		assertUser(1, "first", 1);
+	}
+
+	@Test(expected = EmptyResultDataAccessException.class)
+	public void updateOfMissingKeyFails() throws Exception {
+		MultiRowItemWriter<User> writer = writer(MultiRowItemWriter.Mode.UPDATE);
+		writer.addKeyColumn("id");
+		writer.addValueColumn("username");
+		writer.afterPropertiesSet();
+
+		writer.write(Arrays.asList(user(1, "a", 1), user(99, "missing", 1)));
+	}
+
+	@Test
+	public void updateOfMissingKeyIgnoredWithoutAssertUpdates() throws Exception {
+		MultiRowItemWriter<User> writer = writer(MultiRowItemWriter.Mode.UPDATE);
+		writer.addKeyColumn("id");
+		writer.addValueColumn("username");
+		writer.setAssertUpdates(false);
+		writer.afterPropertiesSet();
+
+		writer.write(Arrays.asList(user(1, "a", 1), user(99, "missing", 1)));
+
+		assertUser(1, "a", 1);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user", Integer.class)).isEqualTo(3);
+	}
+
+	@Test
+	public void upsertInsertsAndUpdates() throws Exception {
+		MultiRowItemWriter<User> writer = writer(MultiRowItemWriter.Mode.UPSERT);
+		writer.addKeyColumn("id");
+		writer.addValueColumn("username");
+		writer.addValueColumn("sex");
+		writer.addValueColumn("create_time");
+		writer.addValueColumn("version");
+		writer.afterPropertiesSet();
+
+		writer.write(Arrays.asList(user(2, "updated", 5), user(4, "inserted", 6)));
+
+		assertUser(2, "updated", 5);
+		assertUser(4, "inserted", 6);
+		assertThat(jdbcTemplate.queryForObject("SELECT sex FROM user WHERE id = 4", Integer.class)).isEqualTo(2);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user WHERE create_time IS NULL", Integer.class)).isZero();
+	}
+
+	private MultiRowItemWriter<User> writer(MultiRowItemWriter.Mode mode) {
+		MultiRowItemWriter<User> writer = new MultiRowItemWriter<User>();
+		writer.setDataSource(dataSource);
+		writer.setItemClass(User.class);
+		writer.setTable("user");
+		writer.setMode(mode);
+		return writer;
+	}
+
+	private static User user(int id, String username, int version) {
+		return User.build(id, username, 2, System.currentTimeMillis(), version);
+	}
+
+	private void assertUser(int id, String username, int version) {
+		assertThat(jdbcTemplate.queryForObject("SELECT username FROM user WHERE id = ?", String.class, id)).isEqualTo(username);
+		assertThat(jdbcTemplate.queryForObject("SELECT version FROM user WHERE id = ?", Integer.class, id)).isEqualTo(version);
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fanfever.fever.command.RestCommand;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+
+/**
+ * benchmark使用的最小spring context，Client由{@link BenchmarkContext}注册
+ * <p>
+ * 不扫描config包，RestCommand依赖http，不参与
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Configuration
+@ComponentScan(basePackages = {"com.github.fanfever.fever.command", "com.github.fanfever.fever.query", "com.github.fanfever.fever.metrics"},
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = RestCommand.class))
+public class BenchmarkConfiguration {
+
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+        return new PropertySourcesPlaceholderConfigurer();
+    }
+
+    @Bean
+    public ObjectMapper objectMapper() {
+        return new ObjectMapper();
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.github.fanfever.fever.command.DocumentCommand;
+import com.github.fanfever.fever.command.enums.DocumentCommandType;
+import com.github.fanfever.fever.command.enums.RefreshPolicy;
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import com.google.common.collect.Lists;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 内嵌节点 + DocumentCommand/DocumentQuery等组件
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class BenchmarkContext implements Closeable {
+
+    public static final String INDEX = "benchmark";
+    public static final String TYPE = "benchmark";
+
+    private final EmbeddedNode embeddedNode;
+    private final AnnotationConfigApplicationContext applicationContext;
+
+    /**
+     * @param propertyMap 覆盖elasticsearch.*配置
+     */
+    public BenchmarkContext(Map<String, Object> propertyMap) throws Exception {
+        embeddedNode = new EmbeddedNode().start();
+        applicationContext = new AnnotationConfigApplicationContext();
+        applicationContext.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", propertyMap));
+        applicationContext.getBeanFactory().registerSingleton("elasticsearchClient", embeddedNode.client());
+        applicationContext.register(BenchmarkConfiguration.class);
+        applicationContext.refresh();
+    }
+
+    public <T> T getBean(Class<T> clazz) {
+        return applicationContext.getBean(clazz);
+    }
+
+    public Client client() {
+        return embeddedNode.client();
+    }
+
+    /**
+     * 重建单shard无副本的benchmark index
+     */
+    public void recreateIndex() {
+        if (client().admin().indices().prepareExists(INDEX).get().isExists()) {
+            client().admin().indices().prepareDelete(INDEX).get();
+        }
+        client().admin().indices().prepareCreate(INDEX)
+                .setSettings(Settings.builder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0))
+                .get();
+        client().admin().cluster().prepareHealth(INDEX).setWaitForGreenStatus().get();
+    }
+
+    /**
+     * 写入id为[0, count)的document并刷新
+     */
+    public void load(int count, int documentBytes) {
+        DocumentCommand documentCommand = getBean(DocumentCommand.class);
+        for (List<Integer> idList : Lists.partition(IntStream.range(0, count).boxed().collect(Collectors.toList()), 1000)) {
+            documentCommand.executeForResult(requestList(idList, documentBytes), RefreshPolicy.NONE);
+        }
+        client().admin().indices().prepareRefresh(INDEX).get();
+    }
+
+    public static List<DocumentCommandRequest> requestList(List<Integer> idList, int documentBytes) {
+        return idList.stream()
+                .map(id -> DocumentCommandRequest.of(DocumentCommandType.SAVE, INDEX, TYPE, id).setDocument(BenchmarkDocument.of(id, documentBytes)))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() throws IOException {
+        applicationContext.close();
+        embeddedNode.close();
+    }
+
+}
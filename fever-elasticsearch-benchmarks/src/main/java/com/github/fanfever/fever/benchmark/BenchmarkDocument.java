@@ -0,0 +1,39 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.github.fanfever.fever.command.request.BaseDocument;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+/**
+ * benchmark document, content按目标大小填充
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class BenchmarkDocument extends BaseDocument {
+
+    private String name;
+    private String content;
+    private List<String> tagList;
+    private Integer age;
+    private Long createTime;
+
+    public static BenchmarkDocument of(int id, int documentBytes) {
+        BenchmarkDocument document = new BenchmarkDocument();
+        document.setId(id);
+        document.setName("name-" + id);
+        document.setTagList(Lists.newArrayList("tag1", "tag2", "tag3"));
+        document.setAge(id % 100);
+        document.setCreateTime(System.currentTimeMillis());
+        document.setContent(Strings.repeat("x", Math.max(0, documentBytes - 128)));
+        return document;
+    }
+
+}
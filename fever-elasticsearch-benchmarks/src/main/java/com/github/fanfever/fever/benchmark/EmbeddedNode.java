@@ -0,0 +1,73 @@
+package com.github.fanfever.fever.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.node.InternalSettingsPreparer;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.transport.Netty4Plugin;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 单机内嵌elasticsearch节点，数据目录为临时目录，关闭时删除
+ * <p>
+ * 只开放transport(9500-9600)，benchmark经{@link #client()}在同一JVM内访问，不含网络开销
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+public class EmbeddedNode implements Closeable {
+
+    private final Path homePath;
+    private final Node node;
+
+    public EmbeddedNode() throws IOException {
+        this.homePath = Files.createTempDirectory("fever-benchmark-es");
+        Settings settings = Settings.builder()
+                .put("cluster.name", "fever-benchmark")
+                .put("node.name", "fever-benchmark-node")
+                .put("path.home", homePath.toString())
+                .put("transport.type", "netty4")
+                .put("transport.tcp.port", "9500-9600")
+                .put("http.enabled", false)
+                .build();
+        this.node = new PluginNode(settings, Collections.singletonList(Netty4Plugin.class));
+    }
+
+    public EmbeddedNode start() throws Exception {
+        node.start();
+        client().admin().cluster().prepareHealth().setWaitForGreenStatus().get();
+        log.info("embedded node started, home:{}", homePath);
+        return this;
+    }
+
+    public Client client() {
+        return node.client();
+    }
+
+    @Override
+    public void close() throws IOException {
+        node.close();
+        FileSystemUtils.deleteRecursively(homePath.toFile());
+    }
+
+    /**
+     * {@link Node}只在受保护的构造方法中接受classpath plugin
+     */
+    private static class PluginNode extends Node {
+        PluginNode(Settings settings, Collection<Class<? extends Plugin>> classpathPlugins) {
+            super(InternalSettingsPreparer.prepareEnvironment(settings, null), classpathPlugins);
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.github.fanfever.fever.command.DocumentCommand;
+import com.github.fanfever.fever.command.enums.RefreshPolicy;
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import com.google.common.collect.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 内嵌节点写入: 逐条 vs 同步bulk，以及各{@link RefreshPolicy}的代价；BulkIndexer异步bulk见{@link SubmitBenchmark}
+ * <p>
+ * 分数为每毫秒document数
+ * <pre>java -jar target/benchmarks.jar IndexBenchmark</pre>
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1024"})
+    public int documentBytes;
+
+    @Param({"NONE", "WAIT_FOR", "IMMEDIATE", "COALESCE"})
+    public RefreshPolicy refreshPolicy;
+
+    private BenchmarkContext benchmarkContext;
+    private DocumentCommand documentCommand;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        benchmarkContext = new BenchmarkContext(Maps.newHashMap());
+        benchmarkContext.recreateIndex();
+        documentCommand = benchmarkContext.getBean(DocumentCommand.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        benchmarkContext.close();
+    }
+
+    @Benchmark
+    public boolean single() {
+        return documentCommand.execute(nextRequestList(1), refreshPolicy);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public boolean bulk() {
+        return documentCommand.execute(nextRequestList(BATCH_SIZE), refreshPolicy);
+    }
+
+    private List<DocumentCommandRequest> nextRequestList(int size) {
+        int start = sequence.getAndAdd(size);
+        return BenchmarkContext.requestList(IntStream.range(start, start + size).boxed().collect(Collectors.toList()), documentBytes);
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.github.fanfever.fever.query.DocumentQuery;
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发小查询: 逐个search vs 合并为_msearch
+ * <pre>java -jar target/benchmarks.jar MultiSearchBenchmark</pre>
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class MultiSearchBenchmark {
+
+    private static final int DOCUMENT_COUNT = 10000;
+
+    @Param({"false", "true"})
+    public boolean coalesce;
+
+    private BenchmarkContext benchmarkContext;
+    private DocumentQuery documentQuery;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        benchmarkContext = new BenchmarkContext(ImmutableMap.of("elasticsearch.msearch.coalesce.enabled", coalesce));
+        benchmarkContext.recreateIndex();
+        benchmarkContext.load(DOCUMENT_COUNT, 1024);
+        documentQuery = benchmarkContext.getBean(DocumentQuery.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        benchmarkContext.close();
+    }
+
+    @Benchmark
+    public SearchResponse search() {
+        return documentQuery.execute(BenchmarkContext.INDEX, BenchmarkContext.TYPE, QueryBuilders.termQuery("age", ThreadLocalRandom.current().nextInt(100)), 0, 10);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.github.fanfever.fever.query.DocumentQuery;
+import com.google.common.collect.Maps;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 遍历整个index: from/size分页 vs scroll
+ * <p>
+ * documentCount不超过index.max_result_window(10000)，否则from/size无法遍历到底
+ * <pre>java -jar target/benchmarks.jar QueryBenchmark</pre>
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"10000"})
+    public int documentCount;
+
+    @Param({"100", "1000"})
+    public int pageSize;
+
+    private BenchmarkContext benchmarkContext;
+    private DocumentQuery documentQuery;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        benchmarkContext = new BenchmarkContext(Maps.newHashMap());
+        benchmarkContext.recreateIndex();
+        benchmarkContext.load(documentCount, 1024);
+        documentQuery = benchmarkContext.getBean(DocumentQuery.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        benchmarkContext.close();
+    }
+
+    @Benchmark
+    public void fromSize(Blackhole blackhole) {
+        for (int from = 0; from < documentCount; from += pageSize) {
+            List<BenchmarkDocument> documentList = documentQuery.execute(BenchmarkContext.INDEX, BenchmarkContext.TYPE, QueryBuilders.matchAllQuery(), from, pageSize, BenchmarkDocument.class);
+            documentList.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void scroll(Blackhole blackhole) {
+        try (Stream<BenchmarkDocument> stream = documentQuery.stream(BenchmarkContext.INDEX, BenchmarkContext.TYPE, QueryBuilders.matchAllQuery(), pageSize, BenchmarkDocument.class)) {
+            stream.forEach(blackhole::consume);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fanfever.fever.command.bulk.DocumentSerializer;
+import com.github.fanfever.fever.command.bulk.ReusableByteArrayOutputStream;
+import com.github.fanfever.fever.command.enums.DocumentCommandType;
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.index.IndexRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DocumentCommand document序列化: 原实现 vs {@link DocumentSerializer}
+ * <pre>java -jar target/benchmarks.jar SerializationBenchmark -prof gc</pre>
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1024", "51200"})
+    public int documentBytes;
+
+    private ObjectMapper objectMapper;
+    private DocumentSerializer documentSerializer;
+    private BenchmarkDocument document;
+    private DocumentCommandRequest request;
+    private final List<ReusableByteArrayOutputStream> bufferList = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper();
+        documentSerializer = new DocumentSerializer(objectMapper);
+        document = BenchmarkDocument.of(1, documentBytes);
+        request = DocumentCommandRequest.of(DocumentCommandType.SAVE, "benchmark", "benchmark", 1).setDocument(document);
+    }
+
+    /**
+     * 原实现：log.debug参数中的writeValueAsString无论是否开启debug都会执行，随后writeValueAsBytes再序列化一次
+     */
+    @Benchmark
+    public IndexRequest legacy(Blackhole blackhole) throws Exception {
+        blackhole.consume(objectMapper.writeValueAsString(document));
+        return new IndexRequest("benchmark", "benchmark", "1").source(objectMapper.writeValueAsBytes(document));
+    }
+
+    /**
+     * DocumentCommand的用法：序列化到池化buffer，IndexRequest直接引用，bulk完成后归还
+     */
+    @Benchmark
+    public IndexRequest serializer() {
+        BytesRef bytesRef = documentSerializer.serialize(request, bufferList).toBytesRef();
+        IndexRequest indexRequest = new IndexRequest("benchmark", "benchmark", "1").source(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+        documentSerializer.release(bufferList);
+        return indexRequest;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.github.fanfever.fever.benchmark;
+
+import com.github.fanfever.fever.command.DocumentCommand;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 内嵌节点写入: BulkIndexer异步bulk，与{@link IndexBenchmark}的NONE对比
+ * <p>
+ * BulkIndexer不刷新，因此不按刷新策略参数化；分数为每毫秒document数
+ * <pre>java -jar target/benchmarks.jar "IndexBenchmark|SubmitBenchmark"</pre>
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubmitBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1024"})
+    public int documentBytes;
+
+    private BenchmarkContext benchmarkContext;
+    private DocumentCommand documentCommand;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        benchmarkContext = new BenchmarkContext(Maps.newHashMap());
+        benchmarkContext.recreateIndex();
+        documentCommand = benchmarkContext.getBean(DocumentCommand.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        benchmarkContext.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object submit() {
+        int start = sequence.getAndAdd(BATCH_SIZE);
+        List<CompletableFuture<?>> futureList = Lists.newArrayList(documentCommand.submit(
+                BenchmarkContext.requestList(IntStream.range(start, start + BATCH_SIZE).boxed().collect(Collectors.toList()), documentBytes)));
+        documentCommand.flush();
+        return CompletableFuture.allOf(futureList.toArray(new CompletableFuture[futureList.size()])).join();
+    }
+
+}
@@ -1,26 +1,53 @@
 package com.github.fanfever.fever.command;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fanfever.fever.command.bulk.BulkIndexer;
+import com.github.fanfever.fever.command.bulk.BulkRetryPolicy;
+import com.github.fanfever.fever.command.bulk.BulkSettings;
+import com.github.fanfever.fever.command.bulk.DocumentSerializer;
+import com.github.fanfever.fever.command.bulk.RefreshCoalescer;
+import com.github.fanfever.fever.command.bulk.ReusableByteArrayOutputStream;
+import com.github.fanfever.fever.command.enums.DocumentCommandType;
+import com.github.fanfever.fever.command.enums.RefreshPolicy;
+import com.github.fanfever.fever.command.reindex.DualWriteWindow;
 import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import com.github.fanfever.fever.command.response.BulkItemResult;
+import com.github.fanfever.fever.command.response.BulkResult;
+import com.github.fanfever.fever.metrics.ElasticsearchMetrics;
+import com.github.fanfever.fever.query.cache.IndexGenerations;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
-import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.action.update.UpdateRequestBuilder;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * elasticsearch document operation
@@ -41,8 +68,75 @@ public class DocumentCommand {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private IndexGenerations indexGenerations;
+
+    @Autowired
+    private ElasticsearchMetrics elasticsearchMetrics;
+
+    @Value("${elasticsearch.bulk.actions:1000}")
+    private int bulkActions;
+
+    @Value("${elasticsearch.bulk.sizeInBytes:5242880}")
+    private long bulkSizeInBytes;
+
+    @Value("${elasticsearch.bulk.flushIntervalMillis:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${elasticsearch.bulk.concurrentRequests:1}")
+    private int concurrentRequests;
+
+    @Value("${elasticsearch.bulk.maxRetries:3}")
+    private int maxRetries;
+
+    @Value("${elasticsearch.bulk.initialBackoffMillis:50}")
+    private long initialBackoffMillis;
+
+    @Value("${elasticsearch.bulk.maxBackoffMillis:5000}")
+    private long maxBackoffMillis;
+
+    @Value("${elasticsearch.refresh.defaultPolicy:WAIT_FOR}")
+    private RefreshPolicy defaultRefreshPolicy;
+
+    @Value("${elasticsearch.refresh.coalesceWindowMillis:1000}")
+    private long coalesceWindowMillis;
+
+    private BulkIndexer bulkIndexer;
+
+    private BulkRetryPolicy bulkRetryPolicy;
+
+    private RefreshCoalescer refreshCoalescer;
+
+    private DocumentSerializer documentSerializer;
+
+    private final Map<String, DualWriteWindow> dualWriteWindowMap = new ConcurrentHashMap<>();
+
+    private final Set<CompletableFuture<Void>> inFlightExecutionSet = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        BulkSettings bulkSettings = new BulkSettings()
+                .setBulkActions(bulkActions)
+                .setBulkSizeInBytes(bulkSizeInBytes)
+                .setFlushIntervalMillis(flushIntervalMillis)
+                .setConcurrentRequests(concurrentRequests)
+                .setMaxRetries(maxRetries)
+                .setInitialBackoffMillis(initialBackoffMillis)
+                .setMaxBackoffMillis(maxBackoffMillis);
+        bulkIndexer = new BulkIndexer(elasticsearchClient, bulkSettings, elasticsearchMetrics);
+        bulkRetryPolicy = new BulkRetryPolicy(bulkSettings);
+        refreshCoalescer = new RefreshCoalescer(elasticsearchClient, coalesceWindowMillis);
+        documentSerializer = new DocumentSerializer(objectMapper);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        bulkIndexer.close();
+        refreshCoalescer.close();
+    }
+
     /**
-     * 创建更新删除document，默认刷新
+     * 创建更新删除document，按默认刷新策略刷新
      *
      * @param documentCommandRequest {@link DocumentCommandRequest}
      * @return true if the execute should be success; otherwise false
@@ -54,53 +148,293 @@ public class DocumentCommand {
     }
 
     /**
-     * 批量创建更新删除document，默认刷新
+     * 批量创建更新删除document，按默认刷新策略刷新
      *
      * @param documentCommandRequestList {@link DocumentCommandRequest}
      * @return true if the execute should be success; otherwise false
      */
     public boolean execute(final List<DocumentCommandRequest> documentCommandRequestList) {
-        return execute(documentCommandRequestList, true);
+        return execute(documentCommandRequestList, defaultRefreshPolicy);
     }
 
     /**
      * @param documentCommandRequestList {@link DocumentCommandRequest}
-     * @param isRefresh 是否刷新
+     * @param isRefresh 是否刷新，true时使用默认刷新策略
      * @return true if the execute should be success; otherwise false
      */
     public boolean execute(final List<DocumentCommandRequest> documentCommandRequestList, boolean isRefresh) {
-        BulkRequestBuilder bulkRequestBuilder = elasticsearchClient.prepareBulk();
-        for (int i = 0; i < documentCommandRequestList.size(); i++) {
-            DocumentCommandRequest documentCommandRequest = documentCommandRequestList.get(i);
-            switch (documentCommandRequest.getCommandType()) {
-                case SAVE:
-                    bulkRequestBuilder.add(createWrapper(documentCommandRequest));
-                    break;
-                case UPDATE:
-                    bulkRequestBuilder.add(updateWrapper(documentCommandRequest));
-                    break;
-                case DELETE:
-                    bulkRequestBuilder.add(deleteWrapper(documentCommandRequest));
-                    break;
-                default:
-                    throw new AssertionError("operation is not exists!");
+        return execute(documentCommandRequestList, isRefresh ? defaultRefreshPolicy : RefreshPolicy.NONE);
+    }
+
+    /**
+     * @param documentCommandRequestList {@link DocumentCommandRequest}
+     * @param refreshPolicy {@link RefreshPolicy}
+     * @return true if the execute should be success; otherwise false
+     */
+    public boolean execute(final List<DocumentCommandRequest> documentCommandRequestList, RefreshPolicy refreshPolicy) {
+        return !executeForResult(documentCommandRequestList, refreshPolicy).hasFailures();
+    }
+
+    /**
+     * 批量创建更新删除document，返回每个document的执行结果
+     * <p>
+     * 被拒绝(429)的document按{@link BulkRetryPolicy}退避后只重发这部分，已成功的document不会重发
+     *
+     * @param documentCommandRequestList {@link DocumentCommandRequest}
+     * @param refreshPolicy {@link RefreshPolicy}
+     * @return {@link BulkResult}，itemList与请求顺序一致
+     */
+    public BulkResult executeForResult(final List<DocumentCommandRequest> documentCommandRequestList, RefreshPolicy refreshPolicy) {
+        CompletableFuture<Void> execution = beginExecution();
+        List<DualWriteWindow> recordedList = record(documentCommandRequestList);
+        try {
+            return doExecuteForResult(documentCommandRequestList, refreshPolicy);
+        } finally {
+            recordedList.forEach(DualWriteWindow::completed);
+            endExecution(execution);
+        }
+    }
+
+    /**
+     * 池化buffer在bulk(含重试)完成后归还
+     */
+    private BulkResult doExecuteForResult(final List<DocumentCommandRequest> documentCommandRequestList, RefreshPolicy refreshPolicy) {
+        List<ReusableByteArrayOutputStream> bufferList = Lists.newArrayListWithCapacity(documentCommandRequestList.size());
+        try {
+            return doExecuteForResult(documentCommandRequestList, refreshPolicy, bufferList);
+        } finally {
+            documentSerializer.release(bufferList);
+        }
+    }
+
+    private BulkResult doExecuteForResult(final List<DocumentCommandRequest> documentCommandRequestList, RefreshPolicy refreshPolicy,
+                                          final List<ReusableByteArrayOutputStream> bufferList) {
+        BulkItemResponse[] bulkItemResponseArray = new BulkItemResponse[documentCommandRequestList.size()];
+        int[] retriesArray = new int[documentCommandRequestList.size()];
+        List<BytesReference> sourceList = documentCommandRequestList.stream().map(i -> serializeDocument(i, bufferList)).collect(Collectors.toList());
+        List<Integer> pendingList = IntStream.range(0, documentCommandRequestList.size()).boxed().collect(Collectors.toList());
+        String indexName = ElasticsearchMetrics.name(documentCommandRequestList.stream().map(DocumentCommandRequest::getIndex).collect(Collectors.toSet()));
+        String typeName = ElasticsearchMetrics.name(documentCommandRequestList.stream().map(DocumentCommandRequest::getType).collect(Collectors.toSet()));
+        int retries = 0;
+        while (!pendingList.isEmpty()) {
+            BulkRequestBuilder bulkRequestBuilder = elasticsearchClient.prepareBulk();
+            pendingList.forEach(i -> bulkWrapper(bulkRequestBuilder, documentCommandRequestList.get(i), sourceList.get(i)));
+            if (RefreshPolicy.WAIT_FOR == refreshPolicy) {
+                bulkRequestBuilder.setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
             }
+            elasticsearchMetrics.recordBulk(bulkRequestBuilder.numberOfActions(), bulkRequestBuilder.request().estimatedSizeInBytes());
+            long start = System.nanoTime();
+            BulkItemResponse[] pendingResponseArray = bulkRequestBuilder.get().getItems();
+            elasticsearchMetrics.recordLatency("bulk", indexName, typeName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            elasticsearchMetrics.recordRejected("bulk", (int) Arrays.stream(pendingResponseArray).filter(BulkRetryPolicy::isRejected).count());
+            List<Integer> retryList = Lists.newArrayList();
+            for (int j = 0; j < pendingResponseArray.length; j++) {
+                int i = pendingList.get(j);
+                bulkItemResponseArray[i] = pendingResponseArray[j];
+                retriesArray[i] = retries;
+                if (bulkRetryPolicy.shouldRetry(pendingResponseArray[j], retries)) {
+                    retryList.add(i);
+                }
+            }
+            if (!retryList.isEmpty() && !backoff(retries, retryList.size())) {
+                break;
+            }
+            pendingList = retryList;
+            retries++;
+        }
+        refresh(bulkItemResponseArray, refreshPolicy);
+        bumpGeneration(documentCommandRequestList.stream().map(DocumentCommandRequest::getIndex).collect(Collectors.toSet()), refreshPolicy);
+        return new BulkResult(IntStream.range(0, bulkItemResponseArray.length)
+                .mapToObj(i -> BulkItemResult.of(bulkItemResponseArray[i], retriesArray[i]))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * 异步提交document，由bulk pipeline按action数、字节数或时间合并发送，不刷新
+     *
+     * @param documentCommandRequest {@link DocumentCommandRequest}
+     * @return item执行结果，失败时{@link BulkItemResult#isFailed()}为true
+     */
+    public CompletableFuture<BulkItemResult> submit(final DocumentCommandRequest documentCommandRequest) {
+        final List<ReusableByteArrayOutputStream> bufferList = Lists.newArrayListWithCapacity(1);
+        final BytesReference source = serializeDocument(documentCommandRequest, bufferList);
+        CompletableFuture<Void> execution = beginExecution();
+        List<DualWriteWindow> recordedList = record(Collections.singletonList(documentCommandRequest));
+        try {
+            return bulkIndexer.add(bulkRequestBuilder -> bulkWrapper(bulkRequestBuilder, documentCommandRequest, source))
+                    .whenComplete((r, e) -> {
+                        documentSerializer.release(bufferList);
+                        recordedList.forEach(DualWriteWindow::completed);
+                        endExecution(execution);
+                        bumpGeneration(Collections.singleton(documentCommandRequest.getIndex()), RefreshPolicy.NONE);
+                    });
+        } catch (RuntimeException e) {
+            documentSerializer.release(bufferList);
+            recordedList.forEach(DualWriteWindow::completed);
+            endExecution(execution);
+            throw e;
+        }
+    }
+
+    /**
+     * 批量异步提交document
+     *
+     * @param documentCommandRequestList {@link DocumentCommandRequest}
+     * @return 与请求顺序一致的item执行结果
+     */
+    public List<CompletableFuture<BulkItemResult>> submit(final List<DocumentCommandRequest> documentCommandRequestList) {
+        return documentCommandRequestList.stream().map(this::submit).collect(Collectors.toList());
+    }
+
+    /**
+     * 立即发送bulk pipeline中累积的document
+     */
+    public void flush() {
+        bulkIndexer.flush();
+    }
+
+    /**
+     * 发送bulk pipeline中累积的document，并等待调用前已开始的写入(同步及异步)完成
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return false if timeout
+     */
+    public boolean awaitWrites(long timeoutMillis) throws InterruptedException {
+        CompletableFuture<?>[] executions = inFlightExecutionSet.toArray(new CompletableFuture<?>[0]);
+        bulkIndexer.flush();
+        try {
+            CompletableFuture.allOf(executions).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // execution只会正常完成
+            return true;
+        }
+    }
+
+    /**
+     * 开始记录写入alias的请求，供reindex复制完成后重放
+     *
+     * @param alias 调用方写入使用的index名称
+     * @return {@link DualWriteWindow}
+     */
+    public DualWriteWindow openDualWriteWindow(final String alias) {
+        DualWriteWindow dualWriteWindow = new DualWriteWindow(alias);
+        Preconditions.checkState(null == dualWriteWindowMap.putIfAbsent(alias, dualWriteWindow), "dual write window already opened, alias:%s", alias);
+        return dualWriteWindow;
+    }
+
+    /**
+     * 停止记录，window应已{@link DualWriteWindow#close}
+     */
+    public void removeDualWriteWindow(final DualWriteWindow dualWriteWindow) {
+        dualWriteWindowMap.remove(dualWriteWindow.getAlias(), dualWriteWindow);
+    }
+
+    /**
+     * 按index记录到对应的{@link DualWriteWindow}，须在{@link #beginExecution()}之后、发送之前调用
+     *
+     * @return 已记录的window，原始写入完成后需逐个调用{@link DualWriteWindow#completed()}
+     */
+    private List<DualWriteWindow> record(final List<DocumentCommandRequest> documentCommandRequestList) {
+        if (dualWriteWindowMap.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<DualWriteWindow> recordedList = Lists.newArrayListWithCapacity(1);
+        documentCommandRequestList.stream()
+                .collect(Collectors.groupingBy(DocumentCommandRequest::getIndex, LinkedHashMap::new, Collectors.toList()))
+                .forEach((index, indexRequestList) -> {
+                    DualWriteWindow dualWriteWindow = dualWriteWindowMap.get(index);
+                    if (null != dualWriteWindow && dualWriteWindow.record(indexRequestList)) {
+                        recordedList.add(dualWriteWindow);
+                    }
+                });
+        return recordedList;
+    }
+
+    /**
+     * 登记一次写入，供{@link #awaitWrites(long)}等待
+     */
+    private CompletableFuture<Void> beginExecution() {
+        CompletableFuture<Void> execution = new CompletableFuture<>();
+        inFlightExecutionSet.add(execution);
+        return execution;
+    }
+
+    private void endExecution(final CompletableFuture<Void> execution) {
+        inFlightExecutionSet.remove(execution);
+        execution.complete(null);
+    }
+
+    private void refresh(final BulkItemResponse[] bulkItemResponseArray, final RefreshPolicy refreshPolicy) {
+        if (RefreshPolicy.IMMEDIATE != refreshPolicy && RefreshPolicy.COALESCE != refreshPolicy) {
+            return;
         }
-        BulkResponse bulkResponse = bulkRequestBuilder.get();
-        if (isRefresh) {
-            BulkItemResponse[] bulkItemResponseArray = bulkResponse.getItems();
-            Set<String> indexSet = Arrays.stream(bulkItemResponseArray).filter(i -> !i.isFailed()).map(BulkItemResponse::getIndex).collect(Collectors.toSet());
+        Set<String> indexSet = Arrays.stream(bulkItemResponseArray).filter(i -> !i.isFailed()).map(BulkItemResponse::getIndex).collect(Collectors.toSet());
+        if (indexSet.isEmpty()) {
+            return;
+        }
+        if (RefreshPolicy.IMMEDIATE == refreshPolicy) {
             refreshWrapper(indexSet).get();
+        } else {
+            refreshCoalescer.refresh(indexSet);
+        }
+    }
+
+    /**
+     * WAIT_FOR/IMMEDIATE返回时写入已可见，其余策略需等待刷新
+     */
+    private void bumpGeneration(final Set<String> indexSet, final RefreshPolicy refreshPolicy) {
+        if (RefreshPolicy.WAIT_FOR == refreshPolicy || RefreshPolicy.IMMEDIATE == refreshPolicy) {
+            indexGenerations.bump(indexSet);
+        } else {
+            indexGenerations.bumpAfterRefresh(indexSet);
+        }
+    }
+
+    /**
+     * @return false if interrupted
+     */
+    private boolean backoff(int retries, int rejected) {
+        long backoffMillis = bulkRetryPolicy.backoffMillis(retries);
+        log.debug("bulk rejected:{}, retries:{}, backoff:{}ms", rejected, retries + 1, backoffMillis);
+        try {
+            Thread.sleep(backoffMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @param source 已序列化的document，重试时复用
+     */
+    private void bulkWrapper(final BulkRequestBuilder bulkRequestBuilder, final DocumentCommandRequest documentCommandRequest, final BytesReference source) {
+        switch (documentCommandRequest.getCommandType()) {
+            case SAVE:
+                bulkRequestBuilder.add(createWrapper(documentCommandRequest, source));
+                break;
+            case UPDATE:
+                bulkRequestBuilder.add(updateWrapper(documentCommandRequest, source));
+                break;
+            case DELETE:
+                bulkRequestBuilder.add(deleteWrapper(documentCommandRequest));
+                break;
+            default:
+                throw new AssertionError("operation is not exists!");
         }
-        return bulkResponse.hasFailures();
     }
 
-    private IndexRequestBuilder createWrapper(final DocumentCommandRequest documentCommandRequest) {
-        return elasticsearchClient.prepareIndex(documentCommandRequest.getIndex(), documentCommandRequest.getType(), documentCommandRequest.getId()).setSource(serializeDocument(documentCommandRequest.getDocument()));
+    private IndexRequestBuilder createWrapper(final DocumentCommandRequest documentCommandRequest, final BytesReference source) {
+        BytesRef bytesRef = toBytesRef(source);
+        return elasticsearchClient.prepareIndex(documentCommandRequest.getIndex(), documentCommandRequest.getType(), documentCommandRequest.getId()).setSource(bytesRef.bytes, bytesRef.offset, bytesRef.length);
     }
 
-    private UpdateRequestBuilder updateWrapper(final DocumentCommandRequest documentCommandRequest) {
-        return elasticsearchClient.prepareUpdate(documentCommandRequest.getIndex(), documentCommandRequest.getType(), documentCommandRequest.getId()).setDoc(serializeDocument(documentCommandRequest.getDocument()));
+    private UpdateRequestBuilder updateWrapper(final DocumentCommandRequest documentCommandRequest, final BytesReference source) {
+        BytesRef bytesRef = toBytesRef(source);
+        return elasticsearchClient.prepareUpdate(documentCommandRequest.getIndex(), documentCommandRequest.getType(), documentCommandRequest.getId()).setDoc(bytesRef.bytes, bytesRef.offset, bytesRef.length);
     }
 
     private DeleteRequestBuilder deleteWrapper(final DocumentCommandRequest documentCommandRequest) {
@@ -111,14 +445,23 @@ public class DocumentCommand {
         return elasticsearchClient.admin().indices().prepareRefresh(indexSet.toArray(new String[indexSet.size()]));
     }
 
-    private byte[] serializeDocument(Object document) {
-        try {
-            log.debug("serializeDocument:{}", objectMapper.writeValueAsString(document));
-            return objectMapper.writeValueAsBytes(document);
-        } catch (JsonProcessingException e) {
-            log.error("serializeDocument fail, document:{}, exception:{}", document, e);
+    /**
+     * @param bufferList 序列化借出的池化buffer，bulk完成后归还
+     * @return 序列化结果，delete返回null
+     */
+    private BytesReference serializeDocument(final DocumentCommandRequest documentCommandRequest, final List<ReusableByteArrayOutputStream> bufferList) {
+        if (DocumentCommandType.DELETE == documentCommandRequest.getCommandType()) {
+            return null;
         }
-        return new byte[0];
+        return documentSerializer.serialize(documentCommandRequest, bufferList);
+    }
+
+    /**
+     * 单段的{@link BytesReference}(如BytesArray)不复制
+     */
+    private static BytesRef toBytesRef(final BytesReference source) {
+        Preconditions.checkArgument(null != source, "document is null!");
+        return source.toBytesRef();
     }
 
 }
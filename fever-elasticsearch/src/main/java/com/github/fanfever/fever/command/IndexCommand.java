@@ -1,24 +1,52 @@
 package com.github.fanfever.fever.command;
 
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
 import com.github.fanfever.fever.command.enums.IndexCommandType;
+import com.github.fanfever.fever.command.mapping.CompiledMapping;
+import com.github.fanfever.fever.command.mapping.MappingCompiler;
 import com.github.fanfever.fever.command.request.Field;
 import com.github.fanfever.fever.command.request.IndexCommandRequest;
+import com.github.fanfever.fever.command.response.IndexCommandResult;
+import com.github.fanfever.fever.metrics.ElasticsearchMetrics;
+import com.github.fanfever.fever.query.cache.IndexGenerations;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Maps;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.CollectionUtils;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequestBuilder;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.IndicesAdminClient;
-import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.unit.TimeValue;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * elasticsearch index operation
@@ -101,9 +129,54 @@ public class IndexCommand {
 
     private final Client elasticsearchClient;
 
+    private final IndexGenerations indexGenerations;
+
+    private final ElasticsearchMetrics elasticsearchMetrics;
+
+    private final long healthTimeoutMillis;
+
+    private final ExecutorService executorService;
+
+    private final MappingCompiler mappingCompiler;
+
+    /**
+     * index -> type -> 线上mapping的properties
+     */
+    private final Cache<String, Map<String, Map<String, Object>>> liveMappingCache;
+
+    /**
+     * @param parallelism          同时执行的index数，同一index内的操作按请求顺序执行
+     * @param healthTimeoutMillis  等待index达到yellow/green的超时时间
+     * @param mappingCacheSize     已编译mapping及线上mapping的缓存数量
+     * @param liveMappingTtlMillis 线上mapping缓存时间，其他实例修改mapping后最多在该时间后可见
+     */
     @Autowired
-    public IndexCommand(@NonNull Client elasticsearchClient) {
+    public IndexCommand(@NonNull Client elasticsearchClient, @NonNull IndexGenerations indexGenerations, @NonNull ElasticsearchMetrics elasticsearchMetrics,
+                        @Value("${elasticsearch.index.parallelism:8}") int parallelism,
+                        @Value("${elasticsearch.index.healthTimeoutMillis:30000}") long healthTimeoutMillis,
+                        @Value("${elasticsearch.mapping.cacheSize:1000}") long mappingCacheSize,
+                        @Value("${elasticsearch.mapping.liveTtlMillis:600000}") long liveMappingTtlMillis) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
         this.elasticsearchClient = elasticsearchClient;
+        this.indexGenerations = indexGenerations;
+        this.elasticsearchMetrics = elasticsearchMetrics;
+        this.healthTimeoutMillis = healthTimeoutMillis;
+        this.mappingCompiler = new MappingCompiler(mappingCacheSize);
+        this.liveMappingCache = CacheBuilder.newBuilder()
+                .maximumSize(mappingCacheSize)
+                .expireAfterWrite(liveMappingTtlMillis, TimeUnit.MILLISECONDS)
+                .build();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "fever-index-admin-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdown();
     }
 
     /**
@@ -122,36 +195,114 @@ public class IndexCommand {
      * 批量创建更新删除index/mapping
      *
      * @param indexCommandRequestList {@link IndexCommandRequest}
-     * @return true if the execute should be success; otherwise false
+     * @return true if all of the execute should be success; otherwise false
      */
     public boolean execute(final List<IndexCommandRequest> indexCommandRequestList) {
+        return executeForResult(indexCommandRequestList, null).stream().noneMatch(IndexCommandResult::isFailed);
+    }
+
+    /**
+     * 批量创建更新删除index/mapping，返回每个请求的执行结果
+     * <p>
+     * 不同index并发执行，同一index内按请求顺序执行；
+     * 同一index紧随创建的mapping合并进创建请求，连续的同type mapping合并为一次put mapping
+     *
+     * @param indexCommandRequestList {@link IndexCommandRequest}
+     * @param waitForStatus           不为null时等待新建的index达到该状态，超时的创建请求视为失败
+     * @return {@link IndexCommandResult}，与请求顺序一致
+     */
+    public List<IndexCommandResult> executeForResult(final List<IndexCommandRequest> indexCommandRequestList, final ClusterHealthStatus waitForStatus) {
         Assert.notEmpty(indexCommandRequestList, "indexCommandRequestList is null!");
-        Set<String> successResultIndexSet = Sets.newHashSetWithExpectedSize(indexCommandRequestList.size());
-        boolean result = false;
-        for (IndexCommandRequest indexCommandRequest : indexCommandRequestList) {
-            switch (indexCommandRequest.getIndexCommandType()) {
-                case SAVE_INDEX:
-                    result = createIndex(indexCommandRequest);
-                    break;
-                case SAVE_MAPPING:
-                case UPDATE_MAPPING:
-                    result = updateMapping(indexCommandRequest);
-                    break;
-                case DELETE_INDEX:
-                    result = deleteIndex(indexCommandRequest);
-                    break;
-                default:
-                    throw new AssertionError("operation is not exists!");
+        IndexCommandResult[] indexCommandResultArray = new IndexCommandResult[indexCommandRequestList.size()];
+        Map<String, List<Integer>> indexPositionMap = IntStream.range(0, indexCommandRequestList.size()).boxed()
+                .collect(Collectors.groupingBy(i -> indexCommandRequestList.get(i).getIndex(), LinkedHashMap::new, Collectors.toList()));
+        List<Future<?>> futureList = indexPositionMap.values().stream()
+                .map(positionList -> executorService.submit(() -> executeIndex(indexCommandRequestList, positionList, indexCommandResultArray)))
+                .collect(Collectors.toList());
+        try {
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("index command interrupted", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+
+        Set<String> successResultIndexSet = Arrays.stream(indexCommandResultArray).filter(i -> !i.isFailed()).map(IndexCommandResult::getIndex).collect(Collectors.toSet());
+        if (!successResultIndexSet.isEmpty()) {
+            indexGenerations.bump(successResultIndexSet);
+        }
+        if (null != waitForStatus) {
+            waitForStatus(indexCommandResultArray, waitForStatus);
+        }
+        return Arrays.asList(indexCommandResultArray);
+    }
+
+    private void executeIndex(final List<IndexCommandRequest> indexCommandRequestList, final List<Integer> positionList, final IndexCommandResult[] indexCommandResultArray) {
+        for (List<Integer> stepList : steps(indexCommandRequestList, positionList)) {
+            List<IndexCommandRequest> stepRequestList = stepList.stream().map(indexCommandRequestList::get).collect(Collectors.toList());
+            IndexCommandRequest stepHead = stepRequestList.get(0);
+            String failureMessage;
+            long start = System.nanoTime();
+            try {
+                failureMessage = executeStep(stepRequestList) ? null : "not acknowledged";
+                elasticsearchMetrics.recordLatency("admin." + stepHead.getIndexCommandType().name().toLowerCase(), stepHead.getIndex(), stepHead.getType(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (Exception e) {
+                log.error("index command exception, index:{}, type:{}, exception:{}", stepHead.getIndex(), stepHead.getIndexCommandType(), e);
+                failureMessage = String.valueOf(e.getMessage());
+            }
+            for (Integer i : stepList) {
+                indexCommandResultArray[i] = IndexCommandResult.of(indexCommandRequestList.get(i), failureMessage);
             }
-            if (result) {
-                successResultIndexSet.add(indexCommandRequest.getIndex());
+        }
+    }
+
+    /**
+     * 将同一index的请求划分为依次执行的step，每个step发送一次请求
+     */
+    private static List<List<Integer>> steps(final List<IndexCommandRequest> indexCommandRequestList, final List<Integer> positionList) {
+        List<List<Integer>> stepList = Lists.newArrayList();
+        List<Integer> lastStep = null;
+        for (Integer i : positionList) {
+            IndexCommandRequest indexCommandRequest = indexCommandRequestList.get(i);
+            if (isMapping(indexCommandRequest) && null != lastStep && isMergeable(indexCommandRequestList.get(lastStep.get(0)), indexCommandRequest)) {
+                lastStep.add(i);
+                continue;
             }
+            lastStep = Lists.newArrayList(i);
+            stepList.add(lastStep);
         }
+        return stepList;
+    }
+
+    private static boolean isMergeable(final IndexCommandRequest stepHead, final IndexCommandRequest indexCommandRequest) {
+        if (IndexCommandType.SAVE_INDEX == stepHead.getIndexCommandType()) {
+            return true;
+        }
+        return isMapping(stepHead) && stepHead.getType().equals(indexCommandRequest.getType());
+    }
 
-        if (CollectionUtils.isNotEmpty(successResultIndexSet)) {
-            result = 0 == getIndicesAdminClient().prepareRefresh(successResultIndexSet.toArray(new String[successResultIndexSet.size()])).get().getFailedShards();
+    private static boolean isMapping(final IndexCommandRequest indexCommandRequest) {
+        return IndexCommandType.SAVE_MAPPING == indexCommandRequest.getIndexCommandType() || IndexCommandType.UPDATE_MAPPING == indexCommandRequest.getIndexCommandType();
+    }
+
+    private boolean executeStep(final List<IndexCommandRequest> stepRequestList) throws ExecutionException {
+        IndexCommandRequest stepHead = stepRequestList.get(0);
+        switch (stepHead.getIndexCommandType()) {
+            case SAVE_INDEX:
+                return createIndex(stepHead, stepRequestList.subList(1, stepRequestList.size()));
+            case SAVE_MAPPING:
+            case UPDATE_MAPPING:
+                return updateMapping(stepHead.getIndex(), stepHead.getType(), mergeFieldList(stepRequestList));
+            case DELETE_INDEX:
+                return deleteIndex(stepHead);
+            default:
+                throw new AssertionError("operation is not exists!");
         }
-        return result;
     }
 
     /**
@@ -161,139 +312,101 @@ public class IndexCommand {
      *     "index" : {
      *       "number_of_shards" : 5, #default
      *       "number_of_replicas" : 1 #default
-     *     }
+     *     },
+     *     "mappings" : {...}
      *   }
      * }</pre>
      *
      * @param indexCommandRequest {@link IndexCommandRequest}
+     * @param mappingRequestList  随创建一起提交的mapping
      * @return true if the execute should be success; otherwise false
      */
-    private boolean createIndex(final IndexCommandRequest indexCommandRequest) {
-        return getIndicesAdminClient().prepareCreate(indexCommandRequest.getIndex()).get().isAcknowledged();
+    private boolean createIndex(final IndexCommandRequest indexCommandRequest, final List<IndexCommandRequest> mappingRequestList) {
+        CreateIndexRequestBuilder createIndexRequestBuilder = getIndicesAdminClient().prepareCreate(indexCommandRequest.getIndex());
+        Map<String, List<IndexCommandRequest>> typeMap = mappingRequestList.stream().collect(Collectors.groupingBy(IndexCommandRequest::getType, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<String, List<IndexCommandRequest>> entry : typeMap.entrySet()) {
+            CompiledMapping compiledMapping = mappingCompiler.compile(mergeFieldList(entry.getValue()));
+            log.debug("createIndex index:{}, type:{}, source:{}", indexCommandRequest.getIndex(), entry.getKey(), compiledMapping.getSource());
+            createIndexRequestBuilder.addMapping(entry.getKey(), compiledMapping.getSource());
+        }
+        liveMappingCache.invalidate(indexCommandRequest.getIndex());
+        return createIndexRequestBuilder.get().isAcknowledged();
     }
 
     /**
-     * <pre>PUT twitter
-     * {@code
-     *   "settings" : {
-     *     "index" : {
-     *       "number_of_shards" : 5, #default
-     *       "number_of_replicas" : 1 #default
-     *     }
-     *   }
-     * }</pre>
-     *
-     * @param indexCommandRequest {@link IndexCommandRequest}
-     * @return true if the execute should be success; otherwise false
+     * 与线上mapping比较，没有变更时不发送put mapping
      */
-    private boolean updateMapping(final IndexCommandRequest indexCommandRequest) {
-        Assert.notNull(indexCommandRequest, "indexCommandRequest is not null!");
-        XContentBuilder source = mappingsWrapper(indexCommandRequest);
+    private boolean updateMapping(final String index, final String type, final List<Field> fieldList) throws ExecutionException {
+        CompiledMapping compiledMapping = mappingCompiler.compile(fieldList);
+        if (compiledMapping.isSubsetOf(liveMappingCache.get(index, () -> fetchLiveMapping(index)).get(type))) {
+            log.debug("updateMapping skipped, mapping unchanged, index:{}, type:{}", index, type);
+            return true;
+        }
+        log.debug("updateMapping index:{}, type:{}, source:{}", index, type, compiledMapping.getSource());
         try {
-            log.debug("updateMapping index:{}, type:{}, source:{}", indexCommandRequest.getIndex(), indexCommandRequest.getType(), source.string());
-            return getIndicesAdminClient().preparePutMapping(indexCommandRequest.getIndex()).setType(indexCommandRequest.getType()).setSource(source).get().isAcknowledged();
-        } catch (IOException e) {
-            log.error("updateMapping exception:{}", e);
-            return false;
+            return getIndicesAdminClient().preparePutMapping(index).setType(type).setSource(compiledMapping.getSource()).get().isAcknowledged();
+        } finally {
+            liveMappingCache.invalidate(index);
         }
     }
 
     private boolean deleteIndex(final IndexCommandRequest indexCommandRequest) {
-        return elasticsearchClient.admin().indices().prepareDelete(indexCommandRequest.getIndex()).get().isAcknowledged();
+        liveMappingCache.invalidate(indexCommandRequest.getIndex());
+        return getIndicesAdminClient().prepareDelete(indexCommandRequest.getIndex()).get().isAcknowledged();
     }
 
-    private static XContentBuilder mappingsWrapper(final IndexCommandRequest indexCommandRequest) {
-        return mappingsPropertiesWrapper(indexCommandRequest);
+    /**
+     * @return type -> properties
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, Object>> fetchLiveMapping(final String index) throws IOException {
+        ImmutableOpenMap<String, MappingMetaData> typeMappingMap = getIndicesAdminClient().prepareGetMappings(index).get().getMappings().get(index);
+        Map<String, Map<String, Object>> liveMappingMap = Maps.newHashMap();
+        if (null == typeMappingMap) {
+            return liveMappingMap;
+        }
+        for (ObjectObjectCursor<String, MappingMetaData> cursor : typeMappingMap) {
+            Object properties = cursor.value.sourceAsMap().get("properties");
+            liveMappingMap.put(cursor.key, properties instanceof Map ? (Map<String, Object>) properties : Collections.emptyMap());
+        }
+        return liveMappingMap;
     }
 
     /**
-     * <pre>PUT twitter
-     * {@code
-     *   "properties" : {
-     *     "id" : {
-     *       "type" : "integer"
-     *     },
-     *     "date" : {
-     *       "type" : "date",
-     *       "format":"yyyy-MM-dd HH:mm:ss||yyyy-MM-dd||epoch_millis"
-     *     },
-     *     "name" : {
-     *       "type" : "keyword",
-     *       "index" : false,
-     *       "fields" : {
-     *           "raw" : {
-     *              "type" : "keyword" #未经处理，可用于排序分组
-     *           },
-     *           "ik_max_word" : {
-     *               "type" : "text",
-     *               "analyzer": "ik_max_word" #中华人民共和国国歌”拆分为“中华人民共和国,中华人民,中华,华人,人民共和国,人民,人,民,共和国,共和,和,国国,国歌”
-     *           },
-     *           "pinyin" : { #BETA
-     *               "type": "text",
-     *               "analyzer": "pinyin_analyzer" #用于拼音搜索
-     *           },
-     *           "ik_max_word_pinyin": { #BETA
-     *               "type": "text",
-     *               "analyzer": "ik_pinyin_analyzer" #用于ik拼音搜索
-     *           },
-     *           "chinese_sort": { #BETA
-     *               "type": "text",
-     *               "fielddata": true,
-     *               "analyzer": "keyword_chinese_collator" #用于中文排序
-     *           }
-     *       }
-     *     },
-     *   }
-     * }</pre>
-     *
-     * @param indexCommandRequest {@link IndexCommandRequest}
-     * @return a reference to this {@code XContentBuilder} object
+     * 等待成功创建的index达到waitForStatus
      */
-    private static XContentBuilder mappingsPropertiesWrapper(final IndexCommandRequest indexCommandRequest) {
-        try (XContentBuilder root = XContentFactory.jsonBuilder()) {
-            XContentBuilder properties = root.startObject("properties");
-            for (int i = 0; i < indexCommandRequest.getFieldList().size(); i++) {
-                Field field = indexCommandRequest.getFieldList().get(i);
-                XContentBuilder name = properties.startObject(field.getName());
-                switch (field.getType()) {
-                    case STRING:
-                        name.field("type", "keyword");
-                        name.field("index", false);
-                        XContentBuilder fields = name.startObject("fields");
-                        fields.startObject("raw")
-                                .field("type", "keyword").endObject();
-                        if (field.isAnalysis()) {
-                            fields.startObject("analyzer")
-                                    .field("type", "text")
-                                    .field("analyzer", "ik_max_word").endObject();
-                        } else if (field.isNeedPinyinSearch()) {
-                            fields.startObject("ik_max_word_pinyin")
-                                    .field("type", "text")
-                                    .field("analyzer", "ik_max_word_pinyin").endObject();
-                        } else if (field.isSort()) {
-                            fields.startObject("chinese_sort")
-                                    .field("type", "text")
-                                    .field("fielddata", true)
-                                    .field("analyzer", "keyword_chinese_collator").endObject();
-                        }
-                        name.endObject();
-                        break;
-                    case DATE:
-                        name.field("type", "date")
-                                .field("format", "yyyy-MM-dd HH:mm:ss||yyyy-MM-dd||epoch_millis");
-                        break;
-                    default:
-                        name.field("type", field.getType().toString().toLowerCase());
-
-                }
-                name.endObject();
-                properties.endObject().endObject();
-            }
-            return root;
-        } catch (IOException e) {
-            log.error("mappingsPropertiesWrapper exception:{}", e);
+    private void waitForStatus(final IndexCommandResult[] indexCommandResultArray, final ClusterHealthStatus waitForStatus) {
+        List<IndexCommandResult> createdResultList = Arrays.stream(indexCommandResultArray)
+                .filter(i -> IndexCommandType.SAVE_INDEX == i.getIndexCommandType() && !i.isFailed())
+                .collect(Collectors.toList());
+        if (createdResultList.isEmpty()) {
+            return;
+        }
+        String[] indexArray = createdResultList.stream().map(IndexCommandResult::getIndex).distinct().toArray(String[]::new);
+        ClusterHealthRequestBuilder clusterHealthRequestBuilder = elasticsearchClient.admin().cluster().prepareHealth(indexArray)
+                .setTimeout(TimeValue.timeValueMillis(healthTimeoutMillis));
+        if (ClusterHealthStatus.GREEN == waitForStatus) {
+            clusterHealthRequestBuilder.setWaitForGreenStatus();
+        } else {
+            clusterHealthRequestBuilder.setWaitForYellowStatus();
+        }
+        ClusterHealthResponse clusterHealthResponse = clusterHealthRequestBuilder.get();
+        if (clusterHealthResponse.isTimedOut()) {
+            log.warn("wait for {} timeout, indices:{}, status:{}", waitForStatus, indexArray.length, clusterHealthResponse.getStatus());
+            createdResultList.forEach(i -> i.setFailureMessage("wait for " + waitForStatus + " timeout, status:" + clusterHealthResponse.getStatus()));
         }
-        return null;
+    }
+
+    /**
+     * 合并多个请求的field，同名field以后出现的为准
+     */
+    private static List<Field> mergeFieldList(final List<IndexCommandRequest> indexCommandRequestList) {
+        Map<String, Field> fieldMap = Maps.newLinkedHashMap();
+        indexCommandRequestList.stream()
+                .filter(i -> null != i.getFieldList())
+                .flatMap(i -> i.getFieldList().stream())
+                .forEach(field -> fieldMap.put(field.getName(), field));
+        return Lists.newArrayList(fieldMap.values());
     }
 
     private IndicesAdminClient getIndicesAdminClient() {
@@ -0,0 +1,321 @@
+package com.github.fanfever.fever.command;
+
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+import com.github.fanfever.fever.command.bulk.BulkIndexer;
+import com.github.fanfever.fever.command.bulk.BulkSettings;
+import com.github.fanfever.fever.command.enums.IndexCommandType;
+import com.github.fanfever.fever.command.enums.RefreshPolicy;
+import com.github.fanfever.fever.command.enums.ReindexState;
+import com.github.fanfever.fever.command.reindex.DualWriteWindow;
+import com.github.fanfever.fever.command.reindex.ReindexProgress;
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import com.github.fanfever.fever.command.request.Field;
+import com.github.fanfever.fever.command.request.IndexCommandRequest;
+import com.github.fanfever.fever.command.response.BulkItemResult;
+import com.github.fanfever.fever.command.response.BulkResult;
+import com.github.fanfever.fever.command.response.IndexCommandResult;
+import com.github.fanfever.fever.query.DocumentQuery;
+import com.github.fanfever.fever.query.cache.IndexGenerations;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于alias的不停机reindex
+ * <p>
+ * 调用方始终通过alias读写，流程：
+ * <ol>
+ * <li>以新的field创建alias_v(N+1)，复制期间关闭其周期刷新</li>
+ * <li>在DocumentCommand中打开{@link DualWriteWindow}，记录复制期间写入alias的请求；等待打开前已开始的写入完成并刷新旧index</li>
+ * <li>sliced scroll并行读取旧index，经{@link BulkIndexer}写入新index，按docsPerSecond限流</li>
+ * <li>按记录顺序将复制期间的写入重放到新index，最多maxReplayRounds轮</li>
+ * <li>持有窗口写锁，等待已记录写入的原始请求完成，完成最后一轮重放，原子切换alias</li>
+ * </ol>
+ * 旧index保留，确认无误后自行删除；alias尚不存在而同名index存在时，切换时删除该index并以alias代替。
+ * 复制或重放有失败的document时不切换alias；alias切换前失败时删除本次创建的新index，重试时使用同一版本号
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+@Component
+public class ReindexCommand {
+
+    private static final String VERSION_SEPARATOR = "_v";
+
+    @Autowired
+    private Client elasticsearchClient;
+
+    @Autowired
+    private IndexCommand indexCommand;
+
+    @Autowired
+    private DocumentCommand documentCommand;
+
+    @Autowired
+    private DocumentQuery documentQuery;
+
+    @Autowired
+    private IndexGenerations indexGenerations;
+
+    @Value("${elasticsearch.reindex.slices:4}")
+    private int slices;
+
+    @Value("${elasticsearch.reindex.pageSize:1000}")
+    private int pageSize;
+
+    /**
+     * 复制限流，0为不限流
+     */
+    @Value("${elasticsearch.reindex.docsPerSecond:0}")
+    private double docsPerSecond;
+
+    @Value("${elasticsearch.reindex.replayBatchSize:1000}")
+    private int replayBatchSize;
+
+    /**
+     * 复制后不持锁重放的最大轮数，写入速度超过重放速度时，剩余请求在窗口写锁内完成
+     */
+    @Value("${elasticsearch.reindex.maxReplayRounds:10}")
+    private int maxReplayRounds;
+
+    @Value("${elasticsearch.reindex.completeTimeoutMillis:60000}")
+    private long completeTimeoutMillis;
+
+    private final ConcurrentHashMap<String, ReindexProgress> progressMap = new ConcurrentHashMap<>();
+
+    /**
+     * 以新的field重建alias指向的index，阻塞至完成
+     *
+     * @param alias     调用方读写使用的名称
+     * @param type      type
+     * @param fieldList 新的field
+     * @return {@link ReindexProgress}，失败时state为FAILED
+     */
+    public ReindexProgress execute(final String alias, final String type, final List<Field> fieldList) {
+        String sourceIndex = resolveIndex(alias);
+        String targetIndex = nextVersion(alias, sourceIndex);
+        ReindexProgress reindexProgress = new ReindexProgress(alias, sourceIndex, targetIndex);
+        ReindexProgress previous = progressMap.get(alias);
+        Preconditions.checkState(null == previous || previous.getState().isTerminal(), "reindex is running, alias:%s", alias);
+        progressMap.put(alias, reindexProgress);
+        log.info("reindex start, alias:{}, source:{}, target:{}", alias, sourceIndex, targetIndex);
+
+        DualWriteWindow dualWriteWindow = null;
+        boolean created = false;
+        AtomicBoolean swapped = new AtomicBoolean();
+        try {
+            Preconditions.checkState(!getIndicesAdminClient().prepareExists(targetIndex).get().isExists(), "target index exists:%s", targetIndex);
+            created = true;
+            createIndex(targetIndex, type, fieldList);
+            dualWriteWindow = documentCommand.openDualWriteWindow(alias);
+            // 窗口打开前已开始的写入未被记录，须在scroll前落盘并可见
+            Preconditions.checkState(documentCommand.awaitWrites(completeTimeoutMillis), "wait for pending writes timeout, alias:%s", alias);
+            getIndicesAdminClient().prepareRefresh(sourceIndex).get();
+            copy(reindexProgress);
+            if (reindexProgress.getFailed().sum() > 0) {
+                throw new IllegalStateException("copy failed documents:" + reindexProgress.getFailed().sum());
+            }
+            restoreRefreshInterval(targetIndex);
+            reindexProgress.setState(ReindexState.REPLAYING);
+            for (int round = 0; dualWriteWindow.size() > replayBatchSize; round++) {
+                if (round >= maxReplayRounds) {
+                    log.warn("reindex replay not converging, alias:{}, rounds:{}, remaining:{}", alias, round, dualWriteWindow.size());
+                    break;
+                }
+                replay(dualWriteWindow.drain(), reindexProgress);
+            }
+            reindexProgress.setState(ReindexState.SWAPPING);
+            documentCommand.flush();
+            dualWriteWindow.close(completeTimeoutMillis, documentCommandRequestList -> {
+                replay(documentCommandRequestList, reindexProgress);
+                getIndicesAdminClient().prepareRefresh(targetIndex).get();
+                swapAlias(alias, sourceIndex, targetIndex);
+                swapped.set(true);
+            });
+            indexGenerations.bump(Arrays.asList(alias, sourceIndex, targetIndex));
+            reindexProgress.setState(ReindexState.COMPLETED);
+            log.info("reindex completed, alias:{}, target:{}, copied:{}, replayed:{}, docsPerSecond:{}",
+                    alias, targetIndex, reindexProgress.getCopied().sum(), reindexProgress.getReplayed().sum(), reindexProgress.getDocsPerSecond());
+        } catch (Exception e) {
+            log.error("reindex exception, alias:{}, target:{}, exception:{}", alias, targetIndex, e);
+            reindexProgress.fail(String.valueOf(e.getMessage()));
+            if (null != dualWriteWindow) {
+                dualWriteWindow.close(0, documentCommandRequestList -> {
+                });
+            }
+            if (created && !swapped.get()) {
+                deleteIndex(targetIndex, type);
+            }
+        } finally {
+            if (null != dualWriteWindow) {
+                documentCommand.removeDualWriteWindow(dualWriteWindow);
+            }
+        }
+        return reindexProgress;
+    }
+
+    /**
+     * @return 各alias最近一次reindex的进度
+     */
+    public Collection<ReindexProgress> getProgressList() {
+        return Collections.unmodifiableCollection(progressMap.values());
+    }
+
+    public ReindexProgress getProgress(final String alias) {
+        return progressMap.get(alias);
+    }
+
+    private void createIndex(final String targetIndex, final String type, final List<Field> fieldList) {
+        List<IndexCommandRequest> indexCommandRequestList = Lists.newArrayList(
+                IndexCommandRequest.of(IndexCommandType.SAVE_INDEX, targetIndex, type),
+                IndexCommandRequest.of(IndexCommandType.SAVE_MAPPING, targetIndex, type).setFieldList(fieldList));
+        List<IndexCommandResult> indexCommandResultList = indexCommand.executeForResult(indexCommandRequestList, ClusterHealthStatus.YELLOW);
+        indexCommandResultList.stream().filter(IndexCommandResult::isFailed).findFirst().ifPresent(i -> {
+            throw new IllegalStateException("create index fail, index:" + targetIndex + ", failure:" + i.getFailureMessage());
+        });
+        getIndicesAdminClient().prepareUpdateSettings(targetIndex).setSettings(Settings.builder().put("index.refresh_interval", "-1")).get();
+    }
+
+    private void deleteIndex(final String targetIndex, final String type) {
+        try {
+            if (!indexCommand.execute(IndexCommandRequest.of(IndexCommandType.DELETE_INDEX, targetIndex, type))) {
+                log.error("reindex delete target index fail, target:{}", targetIndex);
+            }
+        } catch (Exception e) {
+            log.error("reindex delete target index exception, target:{}, exception:{}", targetIndex, e);
+        }
+    }
+
+    private void copy(final ReindexProgress reindexProgress) throws InterruptedException {
+        reindexProgress.startCopy(elasticsearchClient.prepareSearch(reindexProgress.getSourceIndex()).setSize(0).get().getHits().getTotalHits());
+        RateLimiter rateLimiter = docsPerSecond > 0 ? RateLimiter.create(docsPerSecond) : null;
+        AtomicLong inFlight = new AtomicLong();
+        BulkSettings bulkSettings = new BulkSettings().setConcurrentRequests(slices);
+        String targetIndex = reindexProgress.getTargetIndex();
+        try (BulkIndexer bulkIndexer = new BulkIndexer(elasticsearchClient, bulkSettings)) {
+            documentQuery.parallelScroll(new String[]{reindexProgress.getSourceIndex()}, new String[0], QueryBuilders.matchAllQuery(), pageSize, slices, hit -> {
+                if (null != rateLimiter) {
+                    rateLimiter.acquire();
+                }
+                BytesRef bytesRef = hit.getSourceRef().toBytesRef();
+                inFlight.incrementAndGet();
+                bulkIndexer.add(bulkRequestBuilder -> bulkRequestBuilder.add(elasticsearchClient.prepareIndex(targetIndex, hit.getType(), hit.getId())
+                        .setSource(bytesRef.bytes, bytesRef.offset, bytesRef.length)))
+                        .whenComplete((bulkItemResult, e) -> {
+                            if (null != e || bulkItemResult.isFailed()) {
+                                reindexProgress.getFailed().increment();
+                                log.warn("reindex copy fail, id:{}, failure:{}", hit.getId(), null != e ? e.getMessage() : bulkItemResult.getFailureMessage());
+                            } else {
+                                reindexProgress.getCopied().increment();
+                            }
+                            inFlight.decrementAndGet();
+                        });
+            });
+        }
+        long deadline = System.currentTimeMillis() + completeTimeoutMillis;
+        while (inFlight.get() > 0) {
+            Preconditions.checkState(System.currentTimeMillis() < deadline, "wait for bulk complete timeout, in-flight:%s", inFlight.get());
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private void restoreRefreshInterval(final String targetIndex) {
+        getIndicesAdminClient().prepareUpdateSettings(targetIndex).setSettings(Settings.builder().putNull("index.refresh_interval")).get();
+    }
+
+    /**
+     * 将写入alias的请求按原顺序改写到新index，有失败时抛出{@link IllegalStateException}，不再切换alias
+     */
+    private void replay(final List<DocumentCommandRequest> documentCommandRequestList, final ReindexProgress reindexProgress) {
+        String targetIndex = reindexProgress.getTargetIndex();
+        for (List<DocumentCommandRequest> partitionList : Lists.partition(documentCommandRequestList, replayBatchSize)) {
+            List<DocumentCommandRequest> replayList = Lists.newArrayListWithCapacity(partitionList.size());
+            partitionList.forEach(i -> replayList.add(DocumentCommandRequest.of(i.getCommandType(), targetIndex, i.getType(), Integer.valueOf(i.getId()))
+                    .setDocument(i.getDocument())
+                    .setSource(i.getSource())));
+            BulkResult bulkResult = documentCommand.executeForResult(replayList, RefreshPolicy.NONE);
+            List<BulkItemResult> failedItemList = bulkResult.getFailedItemList();
+            failedItemList.forEach(i -> log.warn("reindex replay fail, id:{}, failure:{}", i.getId(), i.getFailureMessage()));
+            reindexProgress.getReplayed().add(replayList.size() - failedItemList.size());
+            if (!failedItemList.isEmpty()) {
+                reindexProgress.getFailed().add(failedItemList.size());
+                throw new IllegalStateException("replay failed documents:" + failedItemList.size());
+            }
+        }
+    }
+
+    private void swapAlias(final String alias, final String sourceIndex, final String targetIndex) {
+        IndicesAliasesRequestBuilder indicesAliasesRequestBuilder = getIndicesAdminClient().prepareAliases();
+        if (alias.equals(sourceIndex)) {
+            indicesAliasesRequestBuilder.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(sourceIndex));
+        } else {
+            indicesAliasesRequestBuilder.removeAlias(sourceIndex, alias);
+        }
+        Preconditions.checkState(indicesAliasesRequestBuilder.addAlias(targetIndex, alias).get().isAcknowledged(), "swap alias not acknowledged, alias:%s", alias);
+        log.info("reindex alias swapped, alias:{}, {} -> {}", alias, sourceIndex, targetIndex);
+    }
+
+    /**
+     * @return alias当前指向的index，alias不存在时为同名index
+     */
+    private String resolveIndex(final String alias) {
+        ImmutableOpenMap<String, List<AliasMetaData>> aliasMap = getIndicesAdminClient().prepareGetAliases(alias).get().getAliases();
+        List<String> indexList = Lists.newArrayList();
+        for (ObjectObjectCursor<String, List<AliasMetaData>> cursor : aliasMap) {
+            if (!cursor.value.isEmpty()) {
+                indexList.add(cursor.key);
+            }
+        }
+        Preconditions.checkState(indexList.size() <= 1, "alias points to multiple indices, alias:%s, indices:%s", alias, indexList);
+        if (1 == indexList.size()) {
+            return indexList.get(0);
+        }
+        Preconditions.checkState(getIndicesAdminClient().prepareExists(alias).get().isExists(), "index or alias not exists:%s", alias);
+        return alias;
+    }
+
+    /**
+     * alias_vN -> alias_v(N+1)，其余 -> alias_v1
+     */
+    private static String nextVersion(final String alias, final String sourceIndex) {
+        String prefix = alias + VERSION_SEPARATOR;
+        if (sourceIndex.startsWith(prefix)) {
+            try {
+                return prefix + (Integer.parseInt(sourceIndex.substring(prefix.length())) + 1);
+            } catch (NumberFormatException e) {
+                log.debug("not a versioned index:{}", sourceIndex);
+            }
+        }
+        return prefix + 1;
+    }
+
+    private IndicesAdminClient getIndicesAdminClient() {
+        return elasticsearchClient.admin().indices();
+    }
+
+}
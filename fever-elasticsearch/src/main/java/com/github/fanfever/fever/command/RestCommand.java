@@ -1,33 +1,230 @@
 package com.github.fanfever.fever.command;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.fanfever.fever.command.bulk.BufferPool;
+import com.github.fanfever.fever.command.bulk.ReusableByteArrayOutputStream;
+import com.github.fanfever.fever.command.enums.DocumentCommandType;
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import com.github.fanfever.fever.metrics.ElasticsearchMetrics;
+import com.google.common.base.Preconditions;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+/**
+ * 基于{@link RestClient#performRequestAsync}的异步document操作，所有方法立即返回
+ * <p>
+ * _bulk/_msearch请求体直接写入池化buffer，以{@link NByteArrayEntity}发送，请求完成后buffer归还
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+@Component
 public class RestCommand {
 
+    private static final byte[] NEW_LINE = {'\n'};
+    private static final byte[] EMPTY_HEADER = "{}\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATE_PREFIX = "{\"doc\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATE_SUFFIX = {'}'};
+
     private final RestClient restClient;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter objectWriter;
+    private final ElasticsearchMetrics elasticsearchMetrics;
+    private final BufferPool bufferPool = new BufferPool(64, 64 * 1024, 16 * 1024 * 1024);
 
     @Autowired
-    public RestCommand(@NonNull RestClient restClient) {
+    public RestCommand(@NonNull RestClient restClient, @NonNull ObjectMapper objectMapper, @NonNull ElasticsearchMetrics elasticsearchMetrics) {
         this.restClient = restClient;
+        this.objectMapper = objectMapper;
+        this.elasticsearchMetrics = elasticsearchMetrics;
+        this.objectWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public CompletableFuture<Response> createIndex(String index, String type, int id, String content) {
+        return performRequest("rest.create", index, type, HttpMethod.PUT, index + "/" + type + "/" + id, new NStringEntity(content, ContentType.APPLICATION_JSON), null);
+    }
+
+    public CompletableFuture<Response> updateIndex(String index, String type, int id, String content) {
+        return performRequest("rest.update", index, type, HttpMethod.PUT, index + "/" + type + "/" + id, new NStringEntity(content, ContentType.APPLICATION_JSON), null);
+    }
+
+    public CompletableFuture<Response> deleteIndex(String index, String type, int id) {
+        return performRequest("rest.delete", index, type, HttpMethod.DELETE, index + "/" + type + "/" + id, null, null);
+    }
+
+    /**
+     * 一次_bulk请求，每个document只序列化一次并直接写入请求体
+     *
+     * @param documentCommandRequestList {@link DocumentCommandRequest}
+     * @return _bulk响应，item级失败需解析响应中的errors/items
+     */
+    public CompletableFuture<Response> bulk(final List<DocumentCommandRequest> documentCommandRequestList) {
+        Preconditions.checkArgument(CollectionUtils.isNotEmpty(documentCommandRequestList));
+        ReusableByteArrayOutputStream buffer = bufferPool.borrow();
+        try {
+            for (DocumentCommandRequest documentCommandRequest : documentCommandRequestList) {
+                writeBulkItem(buffer, documentCommandRequest);
+            }
+        } catch (IOException | RuntimeException e) {
+            bufferPool.release(buffer);
+            return failedFuture(e);
+        }
+        elasticsearchMetrics.recordBulk(documentCommandRequestList.size(), buffer.size());
+        return performRequest("rest.bulk",
+                ElasticsearchMetrics.name(documentCommandRequestList.stream().map(DocumentCommandRequest::getIndex).collect(Collectors.toSet())),
+                ElasticsearchMetrics.name(documentCommandRequestList.stream().map(DocumentCommandRequest::getType).collect(Collectors.toSet())),
+                HttpMethod.POST, "_bulk", ndjsonEntity(buffer), buffer);
     }
 
-    public void createIndex(String index, String type, int id, String content) throws IOException {
-        restClient.performRequest(HttpMethod.PUT.name(), index + "/" + type + "/" + id, Collections.emptyMap(), new NStringEntity(content, ContentType.APPLICATION_JSON));
+    /**
+     * @param idCollection document id
+     * @return _mget响应
+     */
+    public CompletableFuture<Response> mget(String index, String type, final Collection<?> idCollection) {
+        Preconditions.checkArgument(CollectionUtils.isNotEmpty(idCollection));
+        try {
+            String content = objectMapper.writeValueAsString(Collections.singletonMap("ids", idCollection));
+            return performRequest("rest.mget", index, type, HttpMethod.POST, index + "/" + type + "/_mget", new NStringEntity(content, ContentType.APPLICATION_JSON), null);
+        } catch (IOException e) {
+            return failedFuture(e);
+        }
     }
 
-    public void updateIndex(String index, String type, int id, String content) throws IOException {
-        restClient.performRequest(HttpMethod.PUT.name(), index + "/" + type + "/" + id, Collections.emptyMap(), new NStringEntity(content, ContentType.APPLICATION_JSON));
+    /**
+     * @param queryList 每个元素为一个完整的search请求体(单行json)
+     * @return _msearch响应，responses与queryList顺序一致
+     */
+    public CompletableFuture<Response> msearch(String index, String type, final List<String> queryList) {
+        Preconditions.checkArgument(CollectionUtils.isNotEmpty(queryList));
+        ReusableByteArrayOutputStream buffer = bufferPool.borrow();
+        for (String query : queryList) {
+            buffer.write(EMPTY_HEADER, 0, EMPTY_HEADER.length);
+            byte[] queryBytes = query.getBytes(StandardCharsets.UTF_8);
+            buffer.write(queryBytes, 0, queryBytes.length);
+            buffer.write(NEW_LINE, 0, NEW_LINE.length);
+        }
+        return performRequest("rest.msearch", index, type, HttpMethod.POST, index + "/" + type + "/_msearch", ndjsonEntity(buffer), buffer);
     }
 
-    public void deleteIndex(String index, String type, int id, String content) throws IOException {
-        restClient.performRequest(HttpMethod.DELETE.name(), index + "/" + type + "/" + id, Collections.emptyMap(), new NStringEntity(content, ContentType.APPLICATION_JSON));
+    private void writeBulkItem(final OutputStream out, final DocumentCommandRequest documentCommandRequest) throws IOException {
+        out.write(("{\"" + action(documentCommandRequest.getCommandType()) + "\":{\"_index\":\"").getBytes(StandardCharsets.UTF_8));
+        out.write(quote(documentCommandRequest.getIndex()));
+        out.write("\",\"_type\":\"".getBytes(StandardCharsets.UTF_8));
+        out.write(quote(documentCommandRequest.getType()));
+        out.write("\",\"_id\":\"".getBytes(StandardCharsets.UTF_8));
+        out.write(quote(documentCommandRequest.getId()));
+        out.write("\"}}\n".getBytes(StandardCharsets.UTF_8));
+        if (DocumentCommandType.DELETE == documentCommandRequest.getCommandType()) {
+            return;
+        }
+        boolean isUpdate = DocumentCommandType.UPDATE == documentCommandRequest.getCommandType();
+        if (isUpdate) {
+            out.write(UPDATE_PREFIX);
+        }
+        if (null != documentCommandRequest.getSource()) {
+            documentCommandRequest.getSource().writeTo(out);
+        } else {
+            Preconditions.checkArgument(null != documentCommandRequest.getDocument(), "document is null!");
+            objectWriter.writeValue(out, documentCommandRequest.getDocument());
+        }
+        if (isUpdate) {
+            out.write(UPDATE_SUFFIX);
+        }
+        out.write(NEW_LINE);
     }
+
+    private static String action(final DocumentCommandType documentCommandType) {
+        switch (documentCommandType) {
+            case SAVE:
+                return "index";
+            case UPDATE:
+                return "update";
+            case DELETE:
+                return "delete";
+            default:
+                throw new AssertionError("operation is not exists!");
+        }
+    }
+
+    private static byte[] quote(final String value) {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(value);
+    }
+
+    private static HttpEntity ndjsonEntity(final ReusableByteArrayOutputStream buffer) {
+        return new NByteArrayEntity(buffer.array(), 0, buffer.size(), ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * @param operation 指标名称
+     * @param buffer    请求体所在的池化buffer，请求完成(含失败)后归还，可为null
+     */
+    private CompletableFuture<Response> performRequest(final String operation, final String index, final String type,
+                                                       final HttpMethod method, final String endpoint, final HttpEntity entity, final ReusableByteArrayOutputStream buffer) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        final long start = System.nanoTime();
+        try {
+            restClient.performRequestAsync(method.name(), endpoint, Collections.emptyMap(), entity, new ResponseListener() {
+                @Override
+                public void onSuccess(Response response) {
+                    release(buffer);
+                    elasticsearchMetrics.recordLatency(operation, index, type, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    future.complete(response);
+                }
+
+                @Override
+                public void onFailure(Exception exception) {
+                    release(buffer);
+                    if (exception instanceof ResponseException && 429 == ((ResponseException) exception).getResponse().getStatusLine().getStatusCode()) {
+                        elasticsearchMetrics.recordRejected(operation, 1);
+                    }
+                    log.error("{} {} exception:{}", method, endpoint, exception);
+                    future.completeExceptionally(exception);
+                }
+            });
+        } catch (RuntimeException e) {
+            release(buffer);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void release(final ReusableByteArrayOutputStream buffer) {
+        if (null != buffer) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(final Exception exception) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
+
 }
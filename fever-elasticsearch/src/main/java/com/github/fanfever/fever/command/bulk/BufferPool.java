@@ -0,0 +1,53 @@
+package com.github.fanfever.fever.command.bulk;
+
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link ReusableByteArrayOutputStream}对象池
+ * <p>
+ * 用于请求体需要跨线程持有到请求完成的场景(如异步http请求)，{@link ThreadLocal}无法满足；
+ * 池满或buffer超过maxRetainedSize时归还的buffer直接丢弃
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class BufferPool {
+
+    private final int initialSize;
+    private final int maxRetainedSize;
+    private final BlockingQueue<ReusableByteArrayOutputStream> bufferQueue;
+
+    /**
+     * @param maxPooled       池中最多保留的buffer数
+     * @param initialSize     新建buffer的初始容量
+     * @param maxRetainedSize 超过该容量的buffer不再放回池中
+     */
+    public BufferPool(int maxPooled, int initialSize, int maxRetainedSize) {
+        Preconditions.checkArgument(maxPooled > 0, "maxPooled must be positive");
+        this.initialSize = initialSize;
+        this.maxRetainedSize = maxRetainedSize;
+        this.bufferQueue = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @return 已reset的buffer，用完需{@link #release(ReusableByteArrayOutputStream)}
+     */
+    public ReusableByteArrayOutputStream borrow() {
+        ReusableByteArrayOutputStream buffer = bufferQueue.poll();
+        return null == buffer ? new ReusableByteArrayOutputStream(initialSize) : buffer;
+    }
+
+    public void release(@NonNull final ReusableByteArrayOutputStream buffer) {
+        if (buffer.capacity() > maxRetainedSize) {
+            return;
+        }
+        buffer.reset();
+        bufferQueue.offer(buffer);
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.github.fanfever.fever.command.bulk;
+
+import com.github.fanfever.fever.command.response.BulkItemResult;
+import com.github.fanfever.fever.metrics.ElasticsearchMetrics;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * long-lived bulk pipeline
+ * <p>
+ * 请求先进入内存中的bulk，达到action数、字节数或flush间隔时异步发送；
+ * 在途bulk数达到{@link BulkSettings#getConcurrentRequests()}时，新的flush会阻塞调用方，形成背压。
+ * 被拒绝(429)的item按{@link BulkRetryPolicy}延迟后重新进入pipeline，其余item直接完成。
+ * 每个item对应一个{@link CompletableFuture}，失败的item同样正常完成，需自行检查{@link BulkItemResult#isFailed()}。
+ * {@link #close()}后不再接受新的action，但已加入的item(包括backoff中和关闭期间被拒绝的)仍按策略重试直至完成
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+public class BulkIndexer implements Closeable {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Client elasticsearchClient;
+    private final BulkSettings bulkSettings;
+    private final BulkRetryPolicy bulkRetryPolicy;
+    private final Semaphore semaphore;
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<PendingItem> backoffItemSet = ConcurrentHashMap.newKeySet();
+    private final Set<CompletableFuture<BulkItemResult>> outstandingFutureSet = ConcurrentHashMap.newKeySet();
+    private final ElasticsearchMetrics elasticsearchMetrics;
+
+    private BulkRequestBuilder bulkRequestBuilder;
+    private List<PendingItem> pendingItemList;
+    private volatile boolean closed;
+
+    public BulkIndexer(@NonNull Client elasticsearchClient, @NonNull BulkSettings bulkSettings) {
+        this(elasticsearchClient, bulkSettings, null);
+    }
+
+    /**
+     * @param elasticsearchMetrics 为null时不记录指标
+     */
+    public BulkIndexer(@NonNull Client elasticsearchClient, @NonNull BulkSettings bulkSettings, ElasticsearchMetrics elasticsearchMetrics) {
+        Preconditions.checkArgument(bulkSettings.getBulkActions() > 0, "bulkActions must be positive");
+        Preconditions.checkArgument(bulkSettings.getConcurrentRequests() > 0, "concurrentRequests must be positive");
+        this.elasticsearchClient = elasticsearchClient;
+        this.bulkSettings = bulkSettings;
+        this.elasticsearchMetrics = elasticsearchMetrics;
+        this.bulkRetryPolicy = new BulkRetryPolicy(bulkSettings);
+        this.semaphore = new Semaphore(bulkSettings.getConcurrentRequests());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fever-bulk-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flush, bulkSettings.getFlushIntervalMillis(), bulkSettings.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+        reset();
+    }
+
+    /**
+     * 加入一个action
+     *
+     * @param appender 向bulk中添加且仅添加一个action，重试时会再次调用
+     * @return 对应item的执行结果
+     */
+    public CompletableFuture<BulkItemResult> add(@NonNull final Consumer<BulkRequestBuilder> appender) {
+        Preconditions.checkState(!closed, "bulkIndexer is closed!");
+        PendingItem pendingItem = new PendingItem(appender, new CompletableFuture<>(), 0, null);
+        outstandingFutureSet.add(pendingItem.future);
+        pendingItem.future.whenComplete((bulkItemResult, throwable) -> outstandingFutureSet.remove(pendingItem.future));
+        enqueue(pendingItem);
+        return pendingItem.future;
+    }
+
+    /**
+     * 立即发送当前已累积的action
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            if (!pendingItemList.isEmpty()) {
+                doFlush();
+            }
+        } catch (Exception e) {
+            log.error("flush exception:{}", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不再接受新的action，反复flush直到所有已加入的item完成(包括backoff后的重试)；
+     * 超过{@link #CLOSE_TIMEOUT_MILLIS}仍未完成时，backoff中的item以最后一次响应完成，其余item以异常完成
+     */
+    @Override
+    public void close() {
+        closed = true;
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+        while (!outstandingFutureSet.isEmpty() && System.currentTimeMillis() < deadline) {
+            flush();
+            CompletableFuture<?>[] outstandingFutures = outstandingFutureSet.toArray(new CompletableFuture<?>[0]);
+            try {
+                CompletableFuture.allOf(outstandingFutures).get(Math.min(bulkSettings.getFlushIntervalMillis(), Math.max(1, deadline - System.currentTimeMillis())), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (TimeoutException | ExecutionException e) {
+                // 仍有backoff中或在途的item，继续flush
+            }
+        }
+        scheduler.shutdownNow();
+        if (!outstandingFutureSet.isEmpty()) {
+            log.warn("close timeout, outstanding items:{}, in-flight bulk:{}", outstandingFutureSet.size(), bulkSettings.getConcurrentRequests() - semaphore.availablePermits());
+            backoffItemSet.forEach(i -> {
+                if (backoffItemSet.remove(i)) {
+                    i.future.complete(BulkItemResult.of(i.lastResponse, i.retries - 1));
+                }
+            });
+            IllegalStateException exception = new IllegalStateException("bulkIndexer closed before item completed");
+            outstandingFutureSet.forEach(future -> future.completeExceptionally(exception));
+        }
+    }
+
+    private void enqueue(final PendingItem pendingItem) {
+        lock.lock();
+        try {
+            pendingItem.appender.accept(bulkRequestBuilder);
+            pendingItemList.add(pendingItem);
+            if (isFull()) {
+                doFlush();
+            }
+        } catch (Exception e) {
+            pendingItem.future.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFull() {
+        return bulkRequestBuilder.numberOfActions() >= bulkSettings.getBulkActions()
+                || bulkRequestBuilder.request().estimatedSizeInBytes() >= bulkSettings.getBulkSizeInBytes();
+    }
+
+    /**
+     * 持有lock时调用，在途bulk已满时阻塞
+     */
+    private void doFlush() {
+        final BulkRequestBuilder request = bulkRequestBuilder;
+        final List<PendingItem> items = pendingItemList;
+        reset();
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            items.forEach(i -> i.future.completeExceptionally(e));
+            return;
+        }
+        if (null != elasticsearchMetrics) {
+            elasticsearchMetrics.recordBulk(request.numberOfActions(), request.request().estimatedSizeInBytes());
+        }
+        final long start = System.nanoTime();
+        try {
+            request.execute(new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse bulkResponse) {
+                    semaphore.release();
+                    BulkItemResponse[] bulkItemResponseArray = bulkResponse.getItems();
+                    record(bulkItemResponseArray, start);
+                    for (int i = 0; i < items.size(); i++) {
+                        complete(items.get(i), bulkItemResponseArray[i]);
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    semaphore.release();
+                    log.error("bulk exception, actions:{}, exception:{}", items.size(), e);
+                    items.forEach(i -> i.future.completeExceptionally(e));
+                }
+            });
+        } catch (Exception e) {
+            semaphore.release();
+            items.forEach(i -> i.future.completeExceptionally(e));
+        }
+    }
+
+    private void record(final BulkItemResponse[] bulkItemResponseArray, final long start) {
+        if (null == elasticsearchMetrics) {
+            return;
+        }
+        elasticsearchMetrics.recordLatency("bulk",
+                ElasticsearchMetrics.name(Arrays.stream(bulkItemResponseArray).map(BulkItemResponse::getIndex).collect(Collectors.toSet())),
+                ElasticsearchMetrics.name(Arrays.stream(bulkItemResponseArray).map(BulkItemResponse::getType).collect(Collectors.toSet())),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        elasticsearchMetrics.recordRejected("bulk", (int) Arrays.stream(bulkItemResponseArray).filter(BulkRetryPolicy::isRejected).count());
+    }
+
+    private void complete(final PendingItem pendingItem, final BulkItemResponse bulkItemResponse) {
+        if (!bulkRetryPolicy.shouldRetry(bulkItemResponse, pendingItem.retries)) {
+            pendingItem.future.complete(BulkItemResult.of(bulkItemResponse, pendingItem.retries));
+            return;
+        }
+        PendingItem retryItem = new PendingItem(pendingItem.appender, pendingItem.future, pendingItem.retries + 1, bulkItemResponse);
+        long backoffMillis = bulkRetryPolicy.backoffMillis(pendingItem.retries);
+        log.debug("bulk item rejected, index:{}, id:{}, retries:{}, backoff:{}ms", bulkItemResponse.getIndex(), bulkItemResponse.getId(), retryItem.retries, backoffMillis);
+        backoffItemSet.add(retryItem);
+        scheduler.schedule(() -> {
+            if (backoffItemSet.remove(retryItem)) {
+                enqueue(retryItem);
+                if (closed) {
+                    flush();
+                }
+            }
+        }, backoffMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void reset() {
+        bulkRequestBuilder = elasticsearchClient.prepareBulk();
+        pendingItemList = Lists.newArrayListWithCapacity(bulkSettings.getBulkActions());
+    }
+
+    @AllArgsConstructor
+    private static class PendingItem {
+        private final Consumer<BulkRequestBuilder> appender;
+        private final CompletableFuture<BulkItemResult> future;
+        private final int retries;
+        private final BulkItemResponse lastResponse;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.github.fanfever.fever.command.bulk;
+
+import lombok.NonNull;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * bulk item重试策略
+ * <p>
+ * 只有被拒绝(429/EsRejectedExecutionException)的item会被重发，成功或其他原因失败的item不重发；
+ * 间隔为exponential backoff + full jitter: random(0, min(maxBackoff, initialBackoff * 2^retries))
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class BulkRetryPolicy {
+
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public BulkRetryPolicy(@NonNull BulkSettings bulkSettings) {
+        this.maxRetries = bulkSettings.getMaxRetries();
+        this.initialBackoffMillis = bulkSettings.getInitialBackoffMillis();
+        this.maxBackoffMillis = bulkSettings.getMaxBackoffMillis();
+    }
+
+    /**
+     * @param bulkItemResponse item响应
+     * @param retries          已重试次数
+     * @return true if the item should be re-sent; otherwise false
+     */
+    public boolean shouldRetry(@NonNull final BulkItemResponse bulkItemResponse, int retries) {
+        return retries < maxRetries && isRejected(bulkItemResponse);
+    }
+
+    /**
+     * @param retries 已重试次数
+     * @return 下次重试前等待时间(ms)
+     */
+    public long backoffMillis(int retries) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retries, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @return item是否因线程池/队列满被拒绝(429)
+     */
+    public static boolean isRejected(@NonNull final BulkItemResponse bulkItemResponse) {
+        if (!bulkItemResponse.isFailed()) {
+            return false;
+        }
+        BulkItemResponse.Failure failure = bulkItemResponse.getFailure();
+        return RestStatus.TOO_MANY_REQUESTS == failure.getStatus()
+                || ExceptionsHelper.unwrapCause(failure.getCause()) instanceof EsRejectedExecutionException;
+    }
+
+}
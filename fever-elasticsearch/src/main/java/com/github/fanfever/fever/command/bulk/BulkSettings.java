@@ -0,0 +1,46 @@
+package com.github.fanfever.fever.command.bulk;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * {@link BulkIndexer} flush settings
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+@Accessors(chain = true)
+public class BulkSettings {
+
+    /**
+     * 单个bulk最大action数
+     */
+    private int bulkActions = 1000;
+    /**
+     * 单个bulk最大字节数
+     */
+    private long bulkSizeInBytes = 5 * 1024 * 1024;
+    /**
+     * 定时flush间隔(ms)
+     */
+    private long flushIntervalMillis = 1000;
+    /**
+     * 同时在途bulk数，超过时调用方阻塞
+     */
+    private int concurrentRequests = 1;
+    /**
+     * 被拒绝(429)item的最大重试次数
+     */
+    private int maxRetries = 3;
+    /**
+     * 首次重试的backoff上限(ms)，之后每次翻倍
+     */
+    private long initialBackoffMillis = 50;
+    /**
+     * backoff上限(ms)
+     */
+    private long maxBackoffMillis = 5000;
+
+}
@@ -0,0 +1,110 @@
+package com.github.fanfever.fever.command.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * document序列化
+ * <p>
+ * 每个document只序列化一次；已序列化的{@link DocumentCommandRequest#getSource()}直接透传。
+ * {@link #serialize(DocumentCommandRequest, List)}写入池化buffer并直接引用，不复制，
+ * bulk完成(含重试)前buffer不能复用，由调用方在完成后{@link #release(List)}；
+ * {@link #serialize(DocumentCommandRequest)}返回独立的byte[]，供需要长期持有source的场景使用
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+public class DocumentSerializer {
+
+    private static final int MAX_POOLED_BUFFERS = 512;
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    /**
+     * 超过该容量的buffer用完即丢弃，避免池中长期持有大数组
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectWriter objectWriter;
+    private final BufferPool bufferPool = new BufferPool(MAX_POOLED_BUFFERS, INITIAL_BUFFER_SIZE, MAX_RETAINED_BUFFER_SIZE);
+
+    public DocumentSerializer(@NonNull ObjectMapper objectMapper) {
+        this.objectWriter = objectMapper.writer();
+    }
+
+    /**
+     * @param documentCommandRequest {@link DocumentCommandRequest}
+     * @return 已序列化的source或document序列化结果，都为空时返回null
+     */
+    public BytesReference serialize(@NonNull final DocumentCommandRequest documentCommandRequest) {
+        if (null != documentCommandRequest.getSource()) {
+            return documentCommandRequest.getSource();
+        }
+        if (null == documentCommandRequest.getDocument()) {
+            return null;
+        }
+        return serialize(documentCommandRequest.getDocument());
+    }
+
+    /**
+     * @param document document
+     * @return 序列化结果，失败时返回空
+     */
+    public BytesReference serialize(@NonNull final Object document) {
+        try {
+            return debug(new BytesArray(objectWriter.writeValueAsBytes(document)));
+        } catch (IOException e) {
+            log.error("serializeDocument fail, document:{}, exception:{}", document, e);
+            return BytesArray.EMPTY;
+        }
+    }
+
+    /**
+     * 序列化到池化buffer，返回值直接引用buffer
+     *
+     * @param documentCommandRequest {@link DocumentCommandRequest}
+     * @param bufferList             本次借出的buffer追加到其中，bulk完成后交给{@link #release(List)}
+     * @return 已序列化的source或document序列化结果，都为空时返回null
+     */
+    public BytesReference serialize(@NonNull final DocumentCommandRequest documentCommandRequest, @NonNull final List<ReusableByteArrayOutputStream> bufferList) {
+        if (null != documentCommandRequest.getSource()) {
+            return documentCommandRequest.getSource();
+        }
+        if (null == documentCommandRequest.getDocument()) {
+            return null;
+        }
+        ReusableByteArrayOutputStream buffer = bufferPool.borrow();
+        bufferList.add(buffer);
+        try {
+            objectWriter.writeValue(buffer, documentCommandRequest.getDocument());
+            return debug(buffer.toBytesArray());
+        } catch (IOException e) {
+            log.error("serializeDocument fail, document:{}, exception:{}", documentCommandRequest.getDocument(), e);
+            return BytesArray.EMPTY;
+        }
+    }
+
+    /**
+     * 归还{@link #serialize(DocumentCommandRequest, List)}借出的buffer，之后其返回值失效
+     */
+    public void release(@NonNull final List<ReusableByteArrayOutputStream> bufferList) {
+        bufferList.forEach(bufferPool::release);
+        bufferList.clear();
+    }
+
+    private static BytesReference debug(final BytesReference source) {
+        if (log.isDebugEnabled()) {
+            log.debug("serializeDocument:{}", source.utf8ToString());
+        }
+        return source;
+    }
+
+}
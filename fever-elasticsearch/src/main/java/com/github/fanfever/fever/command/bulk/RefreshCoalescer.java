@@ -0,0 +1,92 @@
+package com.github.fanfever.fever.command.bulk;
+
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.client.Client;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 合并refresh请求
+ * <p>
+ * 窗口内对任意index的刷新请求只记录index，窗口结束时对所有记录的index发送一次异步refresh
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+public class RefreshCoalescer implements Closeable {
+
+    private final Client elasticsearchClient;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Set<String> pendingIndexSet = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public RefreshCoalescer(@NonNull Client elasticsearchClient, long windowMillis) {
+        Preconditions.checkArgument(windowMillis > 0, "windowMillis must be positive");
+        this.elasticsearchClient = elasticsearchClient;
+        this.windowMillis = windowMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fever-refresh-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 请求刷新，窗口结束时统一执行
+     *
+     * @param indices index集合
+     */
+    public void refresh(@NonNull final Collection<String> indices) {
+        if (indices.isEmpty()) {
+            return;
+        }
+        pendingIndexSet.addAll(indices);
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::drain, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        drain();
+    }
+
+    private void drain() {
+        scheduled.set(false);
+        String[] indexArray = pendingIndexSet.toArray(new String[0]);
+        if (0 == indexArray.length) {
+            return;
+        }
+        pendingIndexSet.removeAll(Arrays.asList(indexArray));
+        elasticsearchClient.admin().indices().prepareRefresh(indexArray).execute(new ActionListener<RefreshResponse>() {
+            @Override
+            public void onResponse(RefreshResponse refreshResponse) {
+                if (0 != refreshResponse.getFailedShards()) {
+                    log.warn("refresh failed shards:{}, indices:{}", refreshResponse.getFailedShards(), indexArray);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                log.error("refresh exception, indices:{}, exception:{}", indexArray, e);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.github.fanfever.fever.command.bulk;
+
+import org.elasticsearch.common.bytes.BytesArray;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 可复用的{@link ByteArrayOutputStream}，reset后保留已扩容的buf
+ * <p>
+ * 非线程安全，配合{@link ThreadLocal}或对象池使用
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+    public ReusableByteArrayOutputStream(int size) {
+        super(size);
+    }
+
+    /**
+     * @return 当前buf容量
+     */
+    public int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * @return 内部buf，不复制；有效数据为[0, {@link #size()})，reset或继续写入后失效
+     */
+    public byte[] array() {
+        return buf;
+    }
+
+    /**
+     * @return 引用内部buf的[0, {@link #size()})，不复制；reset或继续写入后失效
+     */
+    public BytesArray toBytesArray() {
+        return new BytesArray(buf, 0, count);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.github.fanfever.fever.command.enums;
+
+/**
+ * document写入后的刷新策略
+ * <p>
+ * NONE: 不刷新，依赖index.refresh_interval
+ * WAIT_FOR: bulk请求级别refresh=wait_for，等待下一次周期刷新后返回，不额外产生segment
+ * IMMEDIATE: bulk完成后立即对涉及的index同步refresh，代价最高
+ * COALESCE: 将时间窗口内各index的刷新请求合并为一次异步refresh
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public enum RefreshPolicy {
+    NONE, WAIT_FOR, IMMEDIATE, COALESCE
+}
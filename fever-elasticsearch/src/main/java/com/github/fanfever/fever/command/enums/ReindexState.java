@@ -0,0 +1,21 @@
+package com.github.fanfever.fever.command.enums;
+
+/**
+ * reindex阶段
+ * <p>
+ * CREATING: 创建新版本index
+ * COPYING: sliced scroll复制document
+ * REPLAYING: 重放复制期间的写入
+ * SWAPPING: 切换alias
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public enum ReindexState {
+    CREATING, COPYING, REPLAYING, SWAPPING, COMPLETED, FAILED;
+
+    public boolean isTerminal() {
+        return COMPLETED == this || FAILED == this;
+    }
+}
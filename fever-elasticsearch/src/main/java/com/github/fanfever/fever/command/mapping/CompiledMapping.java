@@ -0,0 +1,67 @@
+package com.github.fanfever.fever.command.mapping;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 编译后的type mapping，不可变
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Getter
+public final class CompiledMapping {
+
+    /**
+     * {"properties":{...}}
+     */
+    private final String source;
+    /**
+     * properties下各字段的定义
+     */
+    private final Map<String, Object> propertyMap;
+
+    private CompiledMapping(String source, Map<String, Object> propertyMap) {
+        this.source = source;
+        this.propertyMap = propertyMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    static CompiledMapping of(@NonNull final XContentBuilder xContentBuilder) throws IOException {
+        Map<String, Object> mappingMap = XContentHelper.convertToMap(xContentBuilder.bytes(), true).v2();
+        Map<String, Object> propertyMap = (Map<String, Object>) mappingMap.get("properties");
+        return new CompiledMapping(xContentBuilder.string(), Collections.unmodifiableMap(propertyMap));
+    }
+
+    /**
+     * @param livePropertyMap 线上mapping的properties
+     * @return 每个字段的定义都已包含在线上mapping中，即put mapping不会产生变更
+     */
+    public boolean isSubsetOf(final Map<String, Object> livePropertyMap) {
+        return null != livePropertyMap && isSubset(propertyMap, livePropertyMap);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isSubset(final Map<String, Object> expectedMap, final Map<String, Object> actualMap) {
+        for (Map.Entry<String, Object> entry : expectedMap.entrySet()) {
+            Object actual = actualMap.get(entry.getKey());
+            if (entry.getValue() instanceof Map) {
+                if (!(actual instanceof Map) || !isSubset((Map<String, Object>) entry.getValue(), (Map<String, Object>) actual)) {
+                    return false;
+                }
+            } else if (!Objects.equals(String.valueOf(entry.getValue()), String.valueOf(actual))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.github.fanfever.fever.command.mapping;
+
+import com.github.fanfever.fever.command.request.Field;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.NonNull;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 将{@link Field}列表编译为不可变的mapping，相同的field列表只编译一次
+ * <p>
+ * 缓存key为field列表的字符串形式，编译后修改Field不会影响已缓存的结果
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class MappingCompiler {
+
+    private final Cache<String, CompiledMapping> cache;
+
+    public MappingCompiler(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    public CompiledMapping compile(@NonNull final List<Field> fieldList) {
+        try {
+            return cache.get(String.valueOf(fieldList), () -> CompiledMapping.of(mappingsPropertiesWrapper(fieldList)));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException("compile mapping fail, fieldList:" + fieldList, e.getCause());
+        }
+    }
+
+    /**
+     * <pre>PUT twitter
+     * {@code
+     *   "properties" : {
+     *     "id" : {
+     *       "type" : "integer"
+     *     },
+     *     "date" : {
+     *       "type" : "date",
+     *       "format":"yyyy-MM-dd HH:mm:ss||yyyy-MM-dd||epoch_millis"
+     *     },
+     *     "name" : {
+     *       "type" : "keyword",
+     *       "index" : false,
+     *       "fields" : {
+     *           "raw" : {
+     *              "type" : "keyword" #未经处理，可用于排序分组
+     *           },
+     *           "ik_max_word" : {
+     *               "type" : "text",
+     *               "analyzer": "ik_max_word" #中华人民共和国国歌”拆分为“中华人民共和国,中华人民,中华,华人,人民共和国,人民,人,民,共和国,共和,和,国国,国歌”
+     *           },
+     *           "pinyin" : { #BETA
+     *               "type": "text",
+     *               "analyzer": "pinyin_analyzer" #用于拼音搜索
+     *           },
+     *           "ik_max_word_pinyin": { #BETA
+     *               "type": "text",
+     *               "analyzer": "ik_pinyin_analyzer" #用于ik拼音搜索
+     *           },
+     *           "chinese_sort": { #BETA
+     *               "type": "text",
+     *               "fielddata": true,
+     *               "analyzer": "keyword_chinese_collator" #用于中文排序
+     *           }
+     *       }
+     *     },
+     *   }
+     * }</pre>
+     *
+     * @param fieldList {@link Field}
+     * @return {@link CompiledMapping}
+     */
+    private static XContentBuilder mappingsPropertiesWrapper(final List<Field> fieldList) {
+        try {
+            XContentBuilder root = XContentFactory.jsonBuilder().startObject();
+            XContentBuilder properties = root.startObject("properties");
+            for (Field field : fieldList) {
+                XContentBuilder name = properties.startObject(field.getName());
+                switch (field.getType()) {
+                    case STRING:
+                        name.field("type", "keyword");
+                        name.field("index", false);
+                        XContentBuilder fields = name.startObject("fields");
+                        fields.startObject("raw")
+                                .field("type", "keyword").endObject();
+                        if (field.isAnalysis()) {
+                            fields.startObject("analyzer")
+                                    .field("type", "text")
+                                    .field("analyzer", "ik_max_word").endObject();
+                        } else if (field.isNeedPinyinSearch()) {
+                            fields.startObject("ik_max_word_pinyin")
+                                    .field("type", "text")
+                                    .field("analyzer", "ik_max_word_pinyin").endObject();
+                        } else if (field.isSort()) {
+                            fields.startObject("chinese_sort")
+                                    .field("type", "text")
+                                    .field("fielddata", true)
+                                    .field("analyzer", "keyword_chinese_collator").endObject();
+                        }
+                        fields.endObject();
+                        break;
+                    case DATE:
+                        name.field("type", "date")
+                                .field("format", "yyyy-MM-dd HH:mm:ss||yyyy-MM-dd||epoch_millis");
+                        break;
+                    default:
+                        name.field("type", field.getType().toString().toLowerCase());
+
+                }
+                name.endObject();
+            }
+            properties.endObject();
+            return root.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.github.fanfever.fever.command.reindex;
+
+import com.github.fanfever.fever.command.request.DocumentCommandRequest;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * reindex期间通过alias写入的document请求记录窗口
+ * <p>
+ * DocumentCommand在发送前记录请求，写入完成后调用{@link #completed()}；reindex复制完成后按记录顺序重放到新index。
+ * 最后一轮重放与alias切换在{@link #close(long, Consumer)}的写锁内完成：先等待已记录请求的原始写入完成，
+ * 避免其在alias切换后落入新index而覆盖更新的写入；期间写入短暂阻塞，之后的写入经alias直接进入新index
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class DualWriteWindow {
+
+    @Getter
+    private final String alias;
+    private final Queue<DocumentCommandRequest> requestQueue = new ConcurrentLinkedQueue<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong inFlight = new AtomicLong();
+    private boolean closed;
+
+    public DualWriteWindow(@NonNull String alias) {
+        this.alias = alias;
+    }
+
+    /**
+     * 记录一次写入的全部请求，返回true时，调用方在原始写入完成(无论成功失败)后必须调用一次{@link #completed()}
+     *
+     * @return false if the window is closed
+     */
+    public boolean record(@NonNull final List<DocumentCommandRequest> documentCommandRequestList) {
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            inFlight.incrementAndGet();
+            requestQueue.addAll(documentCommandRequestList);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 取出当前记录的全部请求，按记录顺序
+     */
+    public List<DocumentCommandRequest> drain() {
+        List<DocumentCommandRequest> documentCommandRequestList = Lists.newArrayList();
+        DocumentCommandRequest documentCommandRequest;
+        while (null != (documentCommandRequest = requestQueue.poll())) {
+            documentCommandRequestList.add(documentCommandRequest);
+        }
+        return documentCommandRequestList;
+    }
+
+    /**
+     * 一次已记录写入的原始请求已完成
+     */
+    public void completed() {
+        inFlight.decrementAndGet();
+    }
+
+    public int size() {
+        return requestQueue.size();
+    }
+
+    /**
+     * 持有写锁，等待已记录请求的原始写入完成后取出剩余请求交给finalReplay，完成后关闭窗口
+     *
+     * @param awaitMillis 等待原始写入完成的最长时间，0为不等待；超时抛出{@link IllegalStateException}且不调用finalReplay
+     * @param finalReplay 重放剩余请求并切换alias
+     */
+    public void close(long awaitMillis, @NonNull final Consumer<List<DocumentCommandRequest>> finalReplay) {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            long deadline = System.currentTimeMillis() + awaitMillis;
+            while (awaitMillis > 0 && inFlight.get() > 0) {
+                Preconditions.checkState(System.currentTimeMillis() < deadline, "wait for recorded writes timeout, alias:%s, in-flight:%s", alias, inFlight.get());
+                Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+            }
+            try {
+                finalReplay.accept(drain());
+            } finally {
+                closed = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.github.fanfever.fever.command.reindex;
+
+import com.github.fanfever.fever.command.ReindexCommand;
+import com.google.common.collect.Lists;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 将reindex进度发布到/metrics，名称为elasticsearch.reindex.{alias}.*
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Component
+public class ReindexMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "elasticsearch.reindex.";
+
+    @Autowired
+    private ReindexCommand reindexCommand;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metricList = Lists.newArrayList();
+        for (ReindexProgress reindexProgress : reindexCommand.getProgressList()) {
+            String prefix = PREFIX + reindexProgress.getAlias() + ".";
+            metricList.add(new Metric<>(prefix + "total", reindexProgress.getTotal()));
+            metricList.add(new Metric<>(prefix + "copied", reindexProgress.getCopied().sum()));
+            metricList.add(new Metric<>(prefix + "failed", reindexProgress.getFailed().sum()));
+            metricList.add(new Metric<>(prefix + "replayed", reindexProgress.getReplayed().sum()));
+            metricList.add(new Metric<>(prefix + "percent", reindexProgress.getPercent()));
+            metricList.add(new Metric<>(prefix + "docsPerSecond", reindexProgress.getDocsPerSecond()));
+            metricList.add(new Metric<>(prefix + "state", reindexProgress.getState().ordinal()));
+        }
+        return metricList;
+    }
+
+}
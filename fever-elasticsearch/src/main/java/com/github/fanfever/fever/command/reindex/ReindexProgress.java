@@ -0,0 +1,77 @@
+package com.github.fanfever.fever.command.reindex;
+
+import com.github.fanfever.fever.command.enums.ReindexState;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单次reindex的进度
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Getter
+public class ReindexProgress {
+
+    private final String alias;
+    private final String sourceIndex;
+    private final String targetIndex;
+    private final long startMillis = System.currentTimeMillis();
+    private final LongAdder copied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private volatile ReindexState state = ReindexState.CREATING;
+    private volatile long total;
+    private volatile long copyStartMillis;
+    private volatile long endMillis;
+    private volatile String failureMessage;
+
+    public ReindexProgress(@NonNull String alias, @NonNull String sourceIndex, @NonNull String targetIndex) {
+        this.alias = alias;
+        this.sourceIndex = sourceIndex;
+        this.targetIndex = targetIndex;
+    }
+
+    /**
+     * @return 复制阶段的document/s
+     */
+    public double getDocsPerSecond() {
+        if (0 == copyStartMillis) {
+            return 0;
+        }
+        long elapsedMillis = (0 == endMillis ? System.currentTimeMillis() : endMillis) - copyStartMillis;
+        return elapsedMillis <= 0 ? 0 : copied.sum() * 1000D / elapsedMillis;
+    }
+
+    /**
+     * @return 复制进度[0, 100]
+     */
+    public double getPercent() {
+        if (ReindexState.COMPLETED == state) {
+            return 100;
+        }
+        return total <= 0 ? 0 : Math.min(100, (copied.sum() + failed.sum()) * 100D / total);
+    }
+
+    public void startCopy(long total) {
+        this.total = total;
+        this.copyStartMillis = System.currentTimeMillis();
+        this.state = ReindexState.COPYING;
+    }
+
+    public void setState(@NonNull ReindexState state) {
+        this.state = state;
+        if (state.isTerminal()) {
+            this.endMillis = System.currentTimeMillis();
+        }
+    }
+
+    public void fail(String failureMessage) {
+        this.failureMessage = failureMessage;
+        setState(ReindexState.FAILED);
+    }
+
+}
@@ -3,6 +3,8 @@ package com.github.fanfever.fever.command.request;
 import com.github.fanfever.fever.command.enums.DocumentCommandType;
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 
 /**
  *
@@ -23,9 +25,23 @@ class DocumentCommandRequest {
     @NonNull private String type;
     @NonNull private Integer id;
     private BaseDocument document;
+    /**
+     * 已序列化的document，不为空时优先于document使用
+     */
+    private BytesReference source;
 
     public String getId(){
         return String.valueOf(id);
     }
 
+    public DocumentCommandRequest setSource(final BytesReference source){
+        this.source = source;
+        return this;
+    }
+
+    public DocumentCommandRequest setSource(final byte[] source){
+        this.source = null == source ? null : new BytesArray(source);
+        return this;
+    }
+
 }
@@ -0,0 +1,47 @@
+package com.github.fanfever.fever.command.response;
+
+import lombok.Data;
+import lombok.NonNull;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * bulk中单个document的执行结果
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+public class BulkItemResult {
+
+    private String index;
+    private String type;
+    private String id;
+    private String opType;
+    private RestStatus status;
+    private long version;
+    private String failureMessage;
+    /**
+     * 被拒绝后的重试次数
+     */
+    private int retries;
+
+    public static BulkItemResult of(@NonNull final BulkItemResponse bulkItemResponse, int retries) {
+        BulkItemResult bulkItemResult = new BulkItemResult();
+        bulkItemResult.setIndex(bulkItemResponse.getIndex());
+        bulkItemResult.setType(bulkItemResponse.getType());
+        bulkItemResult.setId(bulkItemResponse.getId());
+        bulkItemResult.setOpType(String.valueOf(bulkItemResponse.getOpType()));
+        bulkItemResult.setStatus(bulkItemResponse.status());
+        bulkItemResult.setVersion(bulkItemResponse.getVersion());
+        bulkItemResult.setFailureMessage(bulkItemResponse.getFailureMessage());
+        bulkItemResult.setRetries(retries);
+        return bulkItemResult;
+    }
+
+    public boolean isFailed() {
+        return null != failureMessage;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.github.fanfever.fever.command.response;
+
+import lombok.Data;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * bulk执行结果，itemList与请求顺序一致
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+public class BulkResult {
+
+    @NonNull private List<BulkItemResult> itemList;
+
+    public boolean hasFailures() {
+        return itemList.stream().anyMatch(BulkItemResult::isFailed);
+    }
+
+    public List<BulkItemResult> getFailedItemList() {
+        return itemList.stream().filter(BulkItemResult::isFailed).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.github.fanfever.fever.command.response;
+
+import com.github.fanfever.fever.command.enums.IndexCommandType;
+import com.github.fanfever.fever.command.request.IndexCommandRequest;
+import lombok.Data;
+import lombok.NonNull;
+
+/**
+ * 单个index/mapping操作的执行结果
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+public class IndexCommandResult {
+
+    private String index;
+    private String type;
+    private IndexCommandType indexCommandType;
+    private String failureMessage;
+
+    /**
+     * @param failureMessage 为null表示成功
+     */
+    public static IndexCommandResult of(@NonNull final IndexCommandRequest indexCommandRequest, final String failureMessage) {
+        IndexCommandResult indexCommandResult = new IndexCommandResult();
+        indexCommandResult.setIndex(indexCommandRequest.getIndex());
+        indexCommandResult.setType(indexCommandRequest.getType());
+        indexCommandResult.setIndexCommandType(indexCommandRequest.getIndexCommandType());
+        indexCommandResult.setFailureMessage(failureMessage);
+        return indexCommandResult;
+    }
+
+    public boolean isFailed() {
+        return null != failureMessage;
+    }
+
+}
@@ -1,18 +1,23 @@
 package com.github.fanfever.fever.config;
 
+import com.google.common.base.Preconditions;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
 import org.elasticsearch.transport.client.PreBuiltTransportClient;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.List;
 
 /**
  * @author fanfever
@@ -22,20 +27,61 @@ import java.net.UnknownHostException;
  */
 @Slf4j
 @Configuration
+@EnableConfigurationProperties(ElasticSearchProperties.class)
 public class ElasticSearchConfiguration {
 
     @Bean
     @Lazy
-    public Client esClient(@Value("${elasticsearch.host}") String host,
-                           @Value("${elasticsearch.clusterName}") String clusterName) {
-        Client client = null;
-        try {
-            client = TransportClient.builder()
-                    .settings(Settings.settingsBuilder().put("cluster.name", clusterName).build()).build()
-                    .addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(host), 9300));
-        } catch (UnknownHostException e) {
-            log.error("error", e);
+    public Client esClient(ElasticSearchProperties properties) {
+        List<String> hostList = properties.getHostList();
+        Preconditions.checkState(!hostList.isEmpty(), "elasticsearch.hosts is empty!");
+        ElasticSearchProperties.Transport transport = properties.getTransport();
+        Settings settings = Settings.builder()
+                .put("cluster.name", properties.getClusterName())
+                .put("client.transport.sniff", transport.isSniff())
+                .put("client.transport.ignore_cluster_name", transport.isIgnoreClusterName())
+                .put("client.transport.ping_timeout", transport.getPingTimeoutMillis() + "ms")
+                .put("client.transport.nodes_sampler_interval", transport.getNodesSamplerIntervalMillis() + "ms")
+                .put("transport.ping_schedule", transport.getPingScheduleMillis() + "ms")
+                .put("transport.tcp.connect_timeout", transport.getConnectTimeoutMillis() + "ms")
+                .put("transport.connections_per_node.recovery", transport.getConnectionsPerNodeRecovery())
+                .put("transport.connections_per_node.bulk", transport.getConnectionsPerNodeBulk())
+                .put("transport.connections_per_node.reg", transport.getConnectionsPerNodeReg())
+                .put("transport.connections_per_node.state", transport.getConnectionsPerNodeState())
+                .put("transport.connections_per_node.ping", transport.getConnectionsPerNodePing())
+                .build();
+        TransportClient client = new PreBuiltTransportClient(settings);
+        for (String host : hostList) {
+            try {
+                client.addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(host), properties.getTransportPort()));
+            } catch (UnknownHostException e) {
+                client.close();
+                throw new IllegalStateException("unknown elasticsearch host:" + host, e);
+            }
         }
+        log.info("elasticsearch transport client connected, hosts:{}, sniff:{}", hostList, transport.isSniff());
         return client;
     }
+
+    @Bean
+    @Lazy
+    public RestClient restClient(ElasticSearchProperties properties) {
+        List<String> hostList = properties.getHostList();
+        Preconditions.checkState(!hostList.isEmpty(), "elasticsearch.hosts is empty!");
+        ElasticSearchProperties.Rest rest = properties.getRest();
+        HttpHost[] httpHostArray = hostList.stream().map(host -> new HttpHost(host, properties.getHttpPort(), "http")).toArray(HttpHost[]::new);
+        return RestClient.builder(httpHostArray)
+                .setMaxRetryTimeoutMillis(rest.getMaxRetryTimeoutMillis())
+                .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+                        .setConnectTimeout(rest.getConnectTimeoutMillis())
+                        .setSocketTimeout(rest.getSocketTimeoutMillis()))
+                .setHttpClientConfigCallback(httpClientBuilder -> {
+                    httpClientBuilder.setMaxConnPerRoute(rest.getMaxConnPerRoute()).setMaxConnTotal(rest.getMaxConnTotal());
+                    if (rest.getIoThreadCount() > 0) {
+                        httpClientBuilder.setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(rest.getIoThreadCount()).build());
+                    }
+                    return httpClientBuilder;
+                })
+                .build();
+    }
 }
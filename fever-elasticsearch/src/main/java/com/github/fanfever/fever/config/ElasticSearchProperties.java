@@ -0,0 +1,103 @@
+package com.github.fanfever.fever.config;
+
+import com.google.common.collect.Lists;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * elasticsearch client配置，前缀elasticsearch
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+@ConfigurationProperties(prefix = "elasticsearch")
+public class ElasticSearchProperties {
+
+    private String clusterName;
+    /**
+     * 种子节点，开启sniff时其余节点自动发现
+     */
+    private List<String> hosts = Lists.newArrayList();
+    /**
+     * 单节点配置，hosts为空时使用
+     */
+    private String host;
+    private int transportPort = 9300;
+    private int httpPort = 9200;
+
+    private final Transport transport = new Transport();
+    private final Rest rest = new Rest();
+
+    /**
+     * @return 实际使用的节点列表
+     */
+    public List<String> getHostList() {
+        if (!hosts.isEmpty()) {
+            return hosts;
+        }
+        return null == host ? Lists.newArrayList() : Lists.newArrayList(host);
+    }
+
+    @Data
+    public static class Transport {
+        /**
+         * client.transport.sniff
+         */
+        private boolean sniff = true;
+        /**
+         * client.transport.ignore_cluster_name
+         */
+        private boolean ignoreClusterName = false;
+        /**
+         * client.transport.ping_timeout(ms)
+         */
+        private long pingTimeoutMillis = 5000;
+        /**
+         * client.transport.nodes_sampler_interval(ms)
+         */
+        private long nodesSamplerIntervalMillis = 5000;
+        /**
+         * transport.ping_schedule(ms)，-1为不发送应用层ping
+         */
+        private long pingScheduleMillis = -1;
+        /**
+         * transport.tcp.connect_timeout(ms)
+         */
+        private long connectTimeoutMillis = 30000;
+        /**
+         * transport.connections_per_node.*
+         */
+        private int connectionsPerNodeRecovery = 2;
+        private int connectionsPerNodeBulk = 3;
+        private int connectionsPerNodeReg = 6;
+        private int connectionsPerNodeState = 1;
+        private int connectionsPerNodePing = 1;
+    }
+
+    @Data
+    public static class Rest {
+        /**
+         * 每个节点最大http连接数
+         */
+        private int maxConnPerRoute = 10;
+        /**
+         * 最大http连接总数
+         */
+        private int maxConnTotal = 30;
+        private int connectTimeoutMillis = 1000;
+        private int socketTimeoutMillis = 30000;
+        /**
+         * 同一请求在多个节点间重试的总超时
+         */
+        private int maxRetryTimeoutMillis = 30000;
+        /**
+         * io线程数，0为cpu核数
+         */
+        private int ioThreadCount = 0;
+    }
+
+}
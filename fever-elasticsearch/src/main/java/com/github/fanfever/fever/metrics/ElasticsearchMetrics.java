@@ -0,0 +1,125 @@
+package com.github.fanfever.fever.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+/**
+ * elasticsearch client指标，经actuator的{@link GaugeService}/{@link CounterService}发布到/metrics
+ * <p>
+ * classpath中存在dropwizard metrics时，timer.*记为Timer，histogram.*记为Histogram：
+ * <ul>
+ * <li>timer.elasticsearch.{operation}.{index}.{type}: 耗时(ms)</li>
+ * <li>histogram.elasticsearch.bulk.items / histogram.elasticsearch.bulk.bytes: 每个bulk的action数和字节数</li>
+ * <li>counter.elasticsearch.rejected.{operation}: 被拒绝(429)的次数</li>
+ * <li>histogram.elasticsearch.search.gap.{index}.{type}: search的wall clock与took之差(ms)，即网络、排队及反序列化开销</li>
+ * </ul>
+ * 未启用actuator时不记录；耗时超过elasticsearch.slowlog.thresholdMillis的search以elasticsearch.slowlog记录查询条件
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+@Component
+public class ElasticsearchMetrics {
+
+    private static final Logger SLOW_LOG = LoggerFactory.getLogger("elasticsearch.slowlog");
+    private static final Pattern ILLEGAL_NAME_PATTERN = Pattern.compile("[^A-Za-z0-9_\\-]");
+    private static final String PREFIX = "elasticsearch.";
+    /**
+     * 请求涉及多个index/type时使用的名称
+     */
+    public static final String MULTI = "_multi";
+
+    @Autowired(required = false)
+    private GaugeService gaugeService;
+
+    @Autowired(required = false)
+    private CounterService counterService;
+
+    @Value("${elasticsearch.metrics.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * search慢查询阈值(ms)，小于等于0时不记录
+     */
+    @Value("${elasticsearch.slowlog.thresholdMillis:1000}")
+    private long slowLogThresholdMillis;
+
+    public void recordLatency(String operation, String index, String type, long millis) {
+        if (isGaugeEnabled()) {
+            gaugeService.submit("timer." + PREFIX + operation + "." + sanitize(index) + "." + sanitize(type), millis);
+        }
+    }
+
+    public void recordBulk(int items, long bytes) {
+        if (isGaugeEnabled()) {
+            gaugeService.submit("histogram." + PREFIX + "bulk.items", items);
+            gaugeService.submit("histogram." + PREFIX + "bulk.bytes", bytes);
+        }
+    }
+
+    public void recordRejected(String operation, int count) {
+        if (enabled && null != counterService) {
+            for (int i = 0; i < count; i++) {
+                counterService.increment("counter." + PREFIX + "rejected." + operation);
+            }
+        }
+    }
+
+    /**
+     * 记录search耗时、took差值，超过阈值时记录慢查询
+     *
+     * @param operation            search/count等
+     * @param searchRequestBuilder 查询条件
+     * @param searchResponse       响应
+     * @param wallMillis           调用方观察到的耗时
+     */
+    public void recordSearch(String operation, String[] indexArray, String[] typeArray, SearchRequestBuilder searchRequestBuilder, SearchResponse searchResponse, long wallMillis) {
+        String index = name(indexArray);
+        String type = name(typeArray);
+        recordLatency(operation, index, type, wallMillis);
+        if (isGaugeEnabled()) {
+            gaugeService.submit("histogram." + PREFIX + operation + ".gap." + sanitize(index) + "." + sanitize(type), Math.max(0, wallMillis - searchResponse.getTookInMillis()));
+        }
+        if (slowLogThresholdMillis > 0 && wallMillis >= slowLogThresholdMillis) {
+            SLOW_LOG.warn("operation:{}, indices:{}, types:{}, took:{}ms, wall:{}ms, hits:{}, source:{}", operation, Arrays.toString(indexArray), Arrays.toString(typeArray),
+                    searchResponse.getTookInMillis(), wallMillis, searchResponse.getHits().getTotalHits(), searchRequestBuilder);
+        }
+    }
+
+    /**
+     * @return 单个值原样返回，多个值返回{@link #MULTI}
+     */
+    public static String name(final Collection<String> valueCollection) {
+        if (null == valueCollection || valueCollection.isEmpty()) {
+            return "_all";
+        }
+        return 1 == valueCollection.size() ? valueCollection.iterator().next() : MULTI;
+    }
+
+    public static String name(final String[] valueArray) {
+        return null == valueArray ? name((Collection<String>) null) : name(Arrays.asList(valueArray));
+    }
+
+    private static String sanitize(final String value) {
+        return null == value ? "_all" : ILLEGAL_NAME_PATTERN.matcher(value).replaceAll("_");
+    }
+
+    private boolean isGaugeEnabled() {
+        return enabled && null != gaugeService;
+    }
+
+}
@@ -1,18 +1,62 @@
 package com.github.fanfever.fever.query;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fanfever.fever.command.request.BaseDocument;
+import com.github.fanfever.fever.metrics.ElasticsearchMetrics;
+import com.github.fanfever.fever.query.aggregation.DateHistogramBucket;
+import com.github.fanfever.fever.query.aggregation.StatsResult;
+import com.github.fanfever.fever.query.aggregation.TermBucket;
+import com.github.fanfever.fever.query.cache.QueryCache;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.MultiSearchRequestBuilder;
 import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.search.slice.SliceBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * elasticsearch document query
@@ -27,30 +71,131 @@ import java.util.List;
 @Component
 public class DocumentQuery {
 
+    /**
+     * count结果缓存时使用的size
+     */
+    private static final int COUNT_SIZE = -1;
+
+    private static final String OPERATION_SEARCH = "search";
+
+    private static final String OPERATION_AGGREGATION = "aggregation";
+
+    private static final String AGGREGATION_NAME = "fever";
+
+    /**
+     * termsStream分区超出size时拆分的子分区数
+     */
+    private static final int TERMS_PARTITION_SPLIT = 4;
+
     @Autowired
     private Client elasticsearchClient;
 
+    @Autowired
+    private QueryCache queryCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ElasticsearchMetrics elasticsearchMetrics;
+
+    @Value("${elasticsearch.scroll.keepAliveMillis:60000}")
+    private long scrollKeepAliveMillis;
+
+    @Value("${elasticsearch.msearch.coalesce.enabled:false}")
+    private boolean isCoalesceEnabled;
+
+    @Value("${elasticsearch.msearch.coalesce.windowMillis:2}")
+    private long coalesceWindowMillis;
+
+    @Value("${elasticsearch.msearch.coalesce.maxBatchSize:64}")
+    private int coalesceMaxBatchSize;
+
+    private HitMapper hitMapper;
+
+    private MultiSearchCoalescer multiSearchCoalescer;
+
+    @PostConstruct
+    public void init() {
+        hitMapper = new HitMapper(objectMapper);
+        if (isCoalesceEnabled) {
+            multiSearchCoalescer = new MultiSearchCoalescer(elasticsearchClient, coalesceWindowMillis, coalesceMaxBatchSize);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (null != multiSearchCoalescer) {
+            multiSearchCoalescer.close();
+        }
+    }
+
+    /**
+     * 最多返回前1000条，全量遍历使用{@link #stream(String, String, QueryBuilder, int)}
+     */
     public SearchResponse execute(String index, String type, QueryBuilder queryBuilder) {
-        return wrapper(index, type, queryBuilder, 0, 1000, true).get();
+        return execute(index, type, queryBuilder, 0, 1000, false);
     }
 
     public SearchResponse execute(String index, String type, QueryBuilder queryBuilder, int from, int size) {
-        return wrapper(index, type, queryBuilder, from, size, false).get();
+        return execute(index, type, queryBuilder, from, size, false);
     }
 
     public SearchResponse execute(String index, String type, QueryBuilder queryBuilder, int from, int size, boolean isExplain) {
-        return wrapper(index, type, queryBuilder, from, size, isExplain).get();
+        return execute(new String[]{index}, new String[]{type}, queryBuilder, from, size, isExplain);
     }
 
+    /**
+     * 开启elasticsearch.query.cache.enabled时非explain查询结果走{@link QueryCache}
+     */
     public SearchResponse execute(String[] indexArray, String[] typeArray, QueryBuilder queryBuilder, int from, int size, boolean isExplain) {
-        return wrapper(indexArray, typeArray, queryBuilder, from, size, isExplain).get();
+        if (isExplain) {
+            return search(OPERATION_SEARCH, indexArray, typeArray, wrapper(indexArray, typeArray, queryBuilder, from, size, true));
+        }
+        return queryCache.get(indexArray, typeArray, String.valueOf(queryBuilder), from, size,
+                () -> search(OPERATION_SEARCH, indexArray, typeArray, wrapper(indexArray, typeArray, queryBuilder, from, size, false)));
+    }
+
+    /**
+     * 命中document直接由_source字节反序列化为documentClass，只获取documentClass声明的字段
+     */
+    public <T extends BaseDocument> List<T> execute(String index, String type, QueryBuilder queryBuilder, int from, int size, Class<T> documentClass) {
+        return execute(new String[]{index}, new String[]{type}, queryBuilder, from, size, documentClass, true);
+    }
+
+    /**
+     * @param isSourceFiltering true时只获取documentClass声明的字段，false时获取完整_source
+     */
+    public <T extends BaseDocument> List<T> execute(String[] indexArray, String[] typeArray, QueryBuilder queryBuilder, int from, int size, Class<T> documentClass, boolean isSourceFiltering) {
+        SearchRequestBuilder searchRequestBuilder = wrapper(indexArray, typeArray, queryBuilder, from, size, false);
+        if (isSourceFiltering) {
+            searchRequestBuilder.setFetchSource(hitMapper.fields(documentClass), null);
+        }
+        SearchResponse searchResponse = queryCache.get(indexArray, typeArray, String.valueOf(searchRequestBuilder), from, size,
+                () -> search(OPERATION_SEARCH, indexArray, typeArray, searchRequestBuilder));
+        return map(searchResponse.getHits().getHits(), documentClass);
     }
 
     public MultiSearchResponse execute(List<SearchRequestBuilder> searchRequestBuilderList) {
         Preconditions.checkArgument(CollectionUtils.isNotEmpty(searchRequestBuilderList));
         MultiSearchRequestBuilder multiSearchRequestBuilder = elasticsearchClient.prepareMultiSearch();
         searchRequestBuilderList.forEach(multiSearchRequestBuilder::add);
-        return multiSearchRequestBuilder.get();
+        long start = System.nanoTime();
+        MultiSearchResponse multiSearchResponse = multiSearchRequestBuilder.get();
+        elasticsearchMetrics.recordLatency("msearch", ElasticsearchMetrics.MULTI, ElasticsearchMetrics.MULTI, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return multiSearchResponse;
+    }
+
+    /**
+     * 异步search，开启elasticsearch.msearch.coalesce.enabled时与窗口内的其他search合并为一次_msearch
+     */
+    public CompletableFuture<SearchResponse> submit(SearchRequestBuilder searchRequestBuilder) {
+        if (null != multiSearchCoalescer) {
+            return multiSearchCoalescer.submit(searchRequestBuilder);
+        }
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        searchRequestBuilder.execute(ActionListener.wrap(future::complete, future::completeExceptionally));
+        return future;
     }
 
     public SearchRequestBuilder wrapper(String index, String type, QueryBuilder queryBuilder, int from, boolean isExplain){
@@ -66,7 +211,214 @@ public class DocumentQuery {
     }
 
     public long count(QueryBuilder queryBuilder, String index, String type) {
-        return wrapper(index, type, queryBuilder, 0, false).get().getHits().getTotalHits();
+        return queryCache.get(new String[]{index}, new String[]{type}, String.valueOf(queryBuilder), 0, COUNT_SIZE,
+                () -> search("count", new String[]{index}, new String[]{type}, wrapper(index, type, queryBuilder, 0, false).setSize(0)).getHits().getTotalHits());
+    }
+
+    /**
+     * @param size 返回doc_count最大的前size个term
+     */
+    public List<TermBucket> terms(String index, String type, QueryBuilder queryBuilder, String field, int size) {
+        Terms terms = aggregate(index, type, queryBuilder, AggregationBuilders.terms(AGGREGATION_NAME).field(field).size(size), true).get(AGGREGATION_NAME);
+        return terms.getBuckets().stream().map(TermBucket::of).collect(Collectors.toList());
+    }
+
+    public List<DateHistogramBucket> dateHistogram(String index, String type, QueryBuilder queryBuilder, String field, DateHistogramInterval interval) {
+        Histogram histogram = aggregate(index, type, queryBuilder, AggregationBuilders.dateHistogram(AGGREGATION_NAME).field(field).dateHistogramInterval(interval), true).get(AGGREGATION_NAME);
+        return histogram.getBuckets().stream().map(DateHistogramBucket::of).collect(Collectors.toList());
+    }
+
+    public StatsResult stats(String index, String type, QueryBuilder queryBuilder, String field) {
+        Stats stats = aggregate(index, type, queryBuilder, AggregationBuilders.stats(AGGREGATION_NAME).field(field), true).get(AGGREGATION_NAME);
+        return StatsResult.of(stats);
+    }
+
+    /**
+     * @return 近似去重数
+     */
+    public long cardinality(String index, String type, QueryBuilder queryBuilder, String field) {
+        Cardinality cardinality = aggregate(index, type, queryBuilder, AggregationBuilders.cardinality(AGGREGATION_NAME).field(field), true).get(AGGREGATION_NAME);
+        return cardinality.getValue();
+    }
+
+    /**
+     * 按分区分页遍历field的全部term，内存中只保留一个分区的bucket
+     * <p>
+     * 按cardinality估算分区数，每个分区以terms include partition/num_partitions请求一次，分区内按term升序；
+     * 分区的size预留一倍余量。cardinality为近似值且hash分区不均匀，分区仍超出时
+     * 将其拆分为{@link #TERMS_PARTITION_SPLIT}个子分区重新请求，不会丢弃bucket
+     *
+     * @param partitionSize 每个分区期望的term数
+     * @return 全部term的bucket stream
+     */
+    public Stream<TermBucket> termsStream(String index, String type, QueryBuilder queryBuilder, String field, int partitionSize) {
+        Preconditions.checkArgument(partitionSize > 0, "partitionSize must be positive");
+        long cardinality = cardinality(index, type, queryBuilder, field);
+        int numPartitions = (int) Math.max(1, (cardinality + partitionSize - 1) / partitionSize);
+        return IntStream.range(0, numPartitions).boxed()
+                .flatMap(partition -> termsPartition(index, type, queryBuilder, field, partitionSize, partition, numPartitions));
+    }
+
+    /**
+     * partition/numPartitions与(partition + numPartitions * i)/(numPartitions * split)的并集相同(floorMod(hash, n))，
+     * 因此超出的分区可按子分区拆分而不重叠
+     */
+    private Stream<TermBucket> termsPartition(String index, String type, QueryBuilder queryBuilder, String field, int partitionSize, int partition, int numPartitions) {
+        TermsAggregationBuilder termsAggregationBuilder = AggregationBuilders.terms(AGGREGATION_NAME).field(field)
+                .includeExclude(new IncludeExclude(partition, numPartitions))
+                .size(partitionSize * 2)
+                .order(Terms.Order.term(true));
+        Terms terms = aggregate(index, type, queryBuilder, termsAggregationBuilder, false).get(AGGREGATION_NAME);
+        if (terms.getSumOfOtherDocCounts() <= 0) {
+            return terms.getBuckets().stream().map(TermBucket::of);
+        }
+        long subNumPartitions = (long) numPartitions * TERMS_PARTITION_SPLIT;
+        Preconditions.checkState(subNumPartitions <= Integer.MAX_VALUE, "termsStream partition overflow, index:%s, field:%s, partition:%s/%s", index, field, partition, numPartitions);
+        log.debug("termsStream partition overflow, split, index:{}, field:{}, partition:{}/{}, sumOfOtherDocCounts:{}",
+                index, field, partition, numPartitions, terms.getSumOfOtherDocCounts());
+        return IntStream.range(0, TERMS_PARTITION_SPLIT).boxed()
+                .flatMap(i -> termsPartition(index, type, queryBuilder, field, partitionSize, partition + numPartitions * i, (int) subNumPartitions));
+    }
+
+    /**
+     * 基于scroll惰性遍历全部命中document，内存中只保留一页；
+     * 使用完需关闭以清除scroll上下文，建议try-with-resources
+     *
+     * @param pageSize 每页hit总数(按_doc排序时为所有shard合计，不是每个shard)
+     * @return {@link SearchHit} stream
+     */
+    public Stream<SearchHit> stream(String index, String type, QueryBuilder queryBuilder, int pageSize) {
+        return stream(new String[]{index}, new String[]{type}, queryBuilder, pageSize);
+    }
+
+    public Stream<SearchHit> stream(String[] indexArray, String[] typeArray, QueryBuilder queryBuilder, int pageSize) {
+        return scrollStream(scrollWrapper(indexArray, typeArray, queryBuilder), pageSize);
+    }
+
+    /**
+     * 基于scroll惰性遍历全部命中document并映射为documentClass，只获取documentClass声明的字段
+     */
+    public <T extends BaseDocument> Stream<T> stream(String index, String type, QueryBuilder queryBuilder, int pageSize, Class<T> documentClass) {
+        SearchRequestBuilder searchRequestBuilder = scrollWrapper(new String[]{index}, new String[]{type}, queryBuilder)
+                .setFetchSource(hitMapper.fields(documentClass), null);
+        return scrollStream(searchRequestBuilder, pageSize).map(hit -> hitMapper.map(hit, documentClass));
+    }
+
+    /**
+     * sliced scroll，每个slice对应一个独立的stream，可分别在不同线程中消费
+     *
+     * @param slices slice数
+     * @return 每个slice的{@link SearchHit} stream
+     */
+    public List<Stream<SearchHit>> sliceStream(String[] indexArray, String[] typeArray, QueryBuilder queryBuilder, int pageSize, int slices) {
+        Preconditions.checkArgument(slices > 0, "slices must be positive");
+        if (1 == slices) {
+            return Lists.newArrayList(stream(indexArray, typeArray, queryBuilder, pageSize));
+        }
+        return IntStream.range(0, slices)
+                .mapToObj(i -> scrollStream(scrollWrapper(indexArray, typeArray, queryBuilder).slice(new SliceBuilder(i, slices)), pageSize))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 使用slices个线程并行遍历全部命中document
+     *
+     * @param consumer 需线程安全
+     * @return 遍历的document数
+     */
+    public long parallelScroll(String index, String type, QueryBuilder queryBuilder, int pageSize, int slices, Consumer<SearchHit> consumer) {
+        return parallelScroll(new String[]{index}, new String[]{type}, queryBuilder, pageSize, slices, consumer);
+    }
+
+    /**
+     * @param typeArray 为空时不限type
+     */
+    public long parallelScroll(String[] indexArray, String[] typeArray, QueryBuilder queryBuilder, int pageSize, int slices, Consumer<SearchHit> consumer) {
+        List<Stream<SearchHit>> streamList = sliceStream(indexArray, typeArray, queryBuilder, pageSize, slices);
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(slices, r -> new Thread(r, "fever-scroll-slice-" + threadIndex.getAndIncrement()));
+        LongAdder counter = new LongAdder();
+        try {
+            List<Future<?>> futureList = streamList.stream()
+                    .map(stream -> executorService.submit(() -> stream.forEach(hit -> {
+                        consumer.accept(hit);
+                        counter.increment();
+                    })))
+                    .collect(Collectors.toList());
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+            return counter.sum();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("parallelScroll interrupted", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+            streamList.forEach(Stream::close);
+        }
+    }
+
+    /**
+     * @param isCached 是否走{@link QueryCache}
+     */
+    private Aggregations aggregate(String index, String type, QueryBuilder queryBuilder, AggregationBuilder aggregationBuilder, boolean isCached) {
+        String[] indexArray = new String[]{index};
+        String[] typeArray = new String[]{type};
+        SearchRequestBuilder searchRequestBuilder = wrapper(index, type, queryBuilder, 0, 0, false).addAggregation(aggregationBuilder);
+        if (!isCached) {
+            return search(OPERATION_AGGREGATION, indexArray, typeArray, searchRequestBuilder).getAggregations();
+        }
+        SearchResponse searchResponse = queryCache.get(indexArray, typeArray, String.valueOf(searchRequestBuilder), 0, 0,
+                () -> search(OPERATION_AGGREGATION, indexArray, typeArray, searchRequestBuilder));
+        return searchResponse.getAggregations();
+    }
+
+    /**
+     * 执行search并记录耗时、took差值及慢查询
+     */
+    private SearchResponse search(String operation, String[] indexArray, String[] typeArray, SearchRequestBuilder searchRequestBuilder) {
+        long start = System.nanoTime();
+        try {
+            SearchResponse searchResponse = null == multiSearchCoalescer ? searchRequestBuilder.get() : coalesce(searchRequestBuilder);
+            elasticsearchMetrics.recordSearch(operation, indexArray, typeArray, searchRequestBuilder, searchResponse, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return searchResponse;
+        } catch (RuntimeException e) {
+            if (RestStatus.TOO_MANY_REQUESTS == ExceptionsHelper.status(e)) {
+                elasticsearchMetrics.recordRejected(operation, 1);
+            }
+            throw e;
+        }
+    }
+
+    private SearchResponse coalesce(SearchRequestBuilder searchRequestBuilder) {
+        try {
+            return multiSearchCoalescer.submit(searchRequestBuilder).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("search interrupted", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T extends BaseDocument> List<T> map(SearchHit[] searchHitArray, Class<T> documentClass) {
+        List<T> documentList = Lists.newArrayListWithCapacity(searchHitArray.length);
+        Arrays.stream(searchHitArray).map(hit -> hitMapper.map(hit, documentClass)).forEach(documentList::add);
+        return documentList;
+    }
+
+    private SearchRequestBuilder scrollWrapper(String[] indexArray, String[] typeArray, QueryBuilder queryBuilder) {
+        return elasticsearchClient.prepareSearch(indexArray).setTypes(typeArray).setQuery(queryBuilder);
+    }
+
+    private Stream<SearchHit> scrollStream(SearchRequestBuilder searchRequestBuilder, int pageSize) {
+        ScrollIterator scrollIterator = new ScrollIterator(elasticsearchClient, searchRequestBuilder, pageSize, TimeValue.timeValueMillis(scrollKeepAliveMillis));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scrollIterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(scrollIterator::close);
     }
 
 }
@@ -0,0 +1,87 @@
+package com.github.fanfever.fever.query;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.github.fanfever.fever.command.request.BaseDocument;
+import lombok.NonNull;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 将hit的_source直接反序列化为document，不经过String/Map中间结果
+ * <p>
+ * 每个document类型缓存一个{@link ObjectReader}及其声明的字段(用于source filtering)
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class HitMapper {
+
+    private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<Class<?>, ObjectReader> readerMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, String[]> fieldMap = new ConcurrentHashMap<>();
+
+    public HitMapper(@NonNull ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param searchHit     hit
+     * @param documentClass document类型
+     * @return document，_source为空时返回null；document id为空时使用hit id
+     */
+    public <T extends BaseDocument> T map(@NonNull final SearchHit searchHit, @NonNull final Class<T> documentClass) {
+        BytesReference source = searchHit.getSourceRef();
+        if (null == source) {
+            return null;
+        }
+        BytesRef bytesRef = source.toBytesRef();
+        try {
+            T document = reader(documentClass).readValue(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+            if (null == document.getId() && isDigits(searchHit.getId())) {
+                document.setId(Integer.valueOf(searchHit.getId()));
+            }
+            return document;
+        } catch (IOException e) {
+            throw new UncheckedIOException("map hit fail, id:" + searchHit.getId(), e);
+        }
+    }
+
+    /**
+     * @param documentClass document类型
+     * @return document声明的json字段名
+     */
+    public String[] fields(@NonNull final Class<?> documentClass) {
+        return fieldMap.computeIfAbsent(documentClass, clazz -> objectMapper.getDeserializationConfig()
+                .introspect(objectMapper.constructType(clazz))
+                .findProperties()
+                .stream()
+                .map(BeanPropertyDefinition::getName)
+                .toArray(String[]::new));
+    }
+
+    private ObjectReader reader(final Class<?> documentClass) {
+        return readerMap.computeIfAbsent(documentClass, clazz -> objectMapper.readerFor(clazz).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+    }
+
+    private static boolean isDigits(final String id) {
+        if (null == id || id.isEmpty() || id.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
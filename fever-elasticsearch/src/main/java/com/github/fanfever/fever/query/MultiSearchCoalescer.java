@@ -0,0 +1,162 @@
+package com.github.fanfever.fever.query;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 合并search请求
+ * <p>
+ * 窗口内并发提交的search合并为一次_msearch，达到maxBatchSize时立即发送；
+ * 响应按提交顺序分发到各自的{@link CompletableFuture}，单个search失败不影响其他search
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+public class MultiSearchCoalescer implements Closeable {
+
+    private final Client elasticsearchClient;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private List<PendingSearch> pendingSearchList = Lists.newArrayList();
+    private ScheduledFuture<?> scheduledDrain;
+    private volatile boolean closed;
+
+    public MultiSearchCoalescer(@NonNull Client elasticsearchClient, long windowMillis, int maxBatchSize) {
+        Preconditions.checkArgument(windowMillis > 0, "windowMillis must be positive");
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+        this.elasticsearchClient = elasticsearchClient;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fever-msearch-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param searchRequestBuilder search请求
+     * @return search响应
+     */
+    public CompletableFuture<SearchResponse> submit(@NonNull final SearchRequestBuilder searchRequestBuilder) {
+        Preconditions.checkState(!closed, "multiSearchCoalescer is closed!");
+        PendingSearch pendingSearch = new PendingSearch(searchRequestBuilder, new CompletableFuture<>());
+        lock.lock();
+        try {
+            pendingSearchList.add(pendingSearch);
+            if (pendingSearchList.size() >= maxBatchSize) {
+                drainLocked();
+            } else if (null == scheduledDrain) {
+                scheduledDrain = scheduler.schedule(this::drain, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return pendingSearch.future;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        drain();
+    }
+
+    private void drain() {
+        lock.lock();
+        try {
+            drainLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drainLocked() {
+        if (null != scheduledDrain) {
+            scheduledDrain.cancel(false);
+            scheduledDrain = null;
+        }
+        if (pendingSearchList.isEmpty()) {
+            return;
+        }
+        List<PendingSearch> batchList = pendingSearchList;
+        pendingSearchList = Lists.newArrayList();
+        try {
+            if (1 == batchList.size()) {
+                searchOne(batchList.get(0));
+            } else {
+                searchBatch(batchList);
+            }
+        } catch (Exception e) {
+            batchList.forEach(i -> i.future.completeExceptionally(e));
+        }
+    }
+
+    private void searchOne(final PendingSearch pendingSearch) {
+        pendingSearch.searchRequestBuilder.execute(new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse searchResponse) {
+                pendingSearch.future.complete(searchResponse);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                pendingSearch.future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private void searchBatch(final List<PendingSearch> batchList) {
+        MultiSearchRequestBuilder multiSearchRequestBuilder = elasticsearchClient.prepareMultiSearch();
+        batchList.forEach(i -> multiSearchRequestBuilder.add(i.searchRequestBuilder));
+        multiSearchRequestBuilder.execute(new ActionListener<MultiSearchResponse>() {
+            @Override
+            public void onResponse(MultiSearchResponse multiSearchResponse) {
+                MultiSearchResponse.Item[] itemArray = multiSearchResponse.getResponses();
+                for (int i = 0; i < batchList.size(); i++) {
+                    if (itemArray[i].isFailure()) {
+                        batchList.get(i).future.completeExceptionally(itemArray[i].getFailure());
+                    } else {
+                        batchList.get(i).future.complete(itemArray[i].getResponse());
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                log.error("msearch exception, searches:{}, exception:{}", batchList.size(), e);
+                batchList.forEach(i -> i.future.completeExceptionally(e));
+            }
+        });
+    }
+
+    @AllArgsConstructor
+    private static class PendingSearch {
+        private final SearchRequestBuilder searchRequestBuilder;
+        private final CompletableFuture<SearchResponse> future;
+    }
+
+}
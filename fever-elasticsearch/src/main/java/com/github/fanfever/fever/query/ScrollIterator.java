@@ -0,0 +1,104 @@
+package com.github.fanfever.fever.query;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于scroll的惰性hit迭代器，每次只持有一页
+ * <p>
+ * 按_doc排序以避免打分和排序开销；遍历完成或{@link #close()}时清除scroll上下文
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Slf4j
+public class ScrollIterator implements Iterator<SearchHit>, Closeable {
+
+    private final Client elasticsearchClient;
+    private final SearchRequestBuilder searchRequestBuilder;
+    private final TimeValue keepAlive;
+
+    private String scrollId;
+    private SearchHit[] page;
+    private int cursor;
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * @param elasticsearchClient  client
+     * @param searchRequestBuilder 查询条件，size/scroll/sort会被覆盖
+     * @param pageSize             每页hit总数(按_doc排序时为所有shard合计，不是每个shard)
+     * @param keepAlive            scroll上下文保持时间
+     */
+    public ScrollIterator(@NonNull Client elasticsearchClient, @NonNull SearchRequestBuilder searchRequestBuilder, int pageSize, @NonNull TimeValue keepAlive) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.searchRequestBuilder = searchRequestBuilder.setSize(pageSize).setScroll(keepAlive).addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC);
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (null != page && cursor < page.length) {
+            return true;
+        }
+        fetch();
+        if (0 == page.length) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public SearchHit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page[cursor++];
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        page = null;
+        if (null != scrollId) {
+            try {
+                elasticsearchClient.prepareClearScroll().addScrollId(scrollId).get();
+            } catch (Exception e) {
+                log.warn("clearScroll exception, scrollId:{}, exception:{}", scrollId, e);
+            }
+        }
+    }
+
+    private void fetch() {
+        SearchResponse searchResponse;
+        if (started) {
+            searchResponse = elasticsearchClient.prepareSearchScroll(scrollId).setScroll(keepAlive).get();
+        } else {
+            started = true;
+            searchResponse = searchRequestBuilder.get();
+        }
+        scrollId = searchResponse.getScrollId();
+        page = searchResponse.getHits().getHits();
+        cursor = 0;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.github.fanfever.fever.query.aggregation;
+
+import lombok.Data;
+import lombok.NonNull;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.joda.time.DateTime;
+
+/**
+ * date_histogram聚合的bucket
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+public class DateHistogramBucket {
+
+    /**
+     * bucket起始时间(epoch millis)
+     */
+    private long key;
+    private String keyAsString;
+    private long docCount;
+
+    public static DateHistogramBucket of(@NonNull final Histogram.Bucket bucket) {
+        DateHistogramBucket dateHistogramBucket = new DateHistogramBucket();
+        dateHistogramBucket.setKey(((DateTime) bucket.getKey()).getMillis());
+        dateHistogramBucket.setKeyAsString(bucket.getKeyAsString());
+        dateHistogramBucket.setDocCount(bucket.getDocCount());
+        return dateHistogramBucket;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.github.fanfever.fever.query.aggregation;
+
+import lombok.Data;
+import lombok.NonNull;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+
+/**
+ * stats聚合结果，count为0时min/max/avg为无穷或NaN
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+public class StatsResult {
+
+    private long count;
+    private double min;
+    private double max;
+    private double avg;
+    private double sum;
+
+    public static StatsResult of(@NonNull final Stats stats) {
+        StatsResult statsResult = new StatsResult();
+        statsResult.setCount(stats.getCount());
+        statsResult.setMin(stats.getMin());
+        statsResult.setMax(stats.getMax());
+        statsResult.setAvg(stats.getAvg());
+        statsResult.setSum(stats.getSum());
+        return statsResult;
+    }
+
+}
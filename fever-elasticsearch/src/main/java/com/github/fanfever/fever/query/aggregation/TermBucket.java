@@ -0,0 +1,27 @@
+package com.github.fanfever.fever.query.aggregation;
+
+import lombok.Data;
+import lombok.NonNull;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+
+/**
+ * terms聚合的bucket
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Data
+public class TermBucket {
+
+    private String key;
+    private long docCount;
+
+    public static TermBucket of(@NonNull final Terms.Bucket bucket) {
+        TermBucket termBucket = new TermBucket();
+        termBucket.setKey(bucket.getKeyAsString());
+        termBucket.setDocCount(bucket.getDocCount());
+        return termBucket;
+    }
+
+}
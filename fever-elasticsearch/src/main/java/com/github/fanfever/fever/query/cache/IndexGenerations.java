@@ -0,0 +1,108 @@
+package com.github.fanfever.fever.query.cache;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每个index的写入代数，DocumentCommand/IndexCommand写入index后递增，{@link QueryCache}据此丢弃旧代数的缓存
+ * <p>
+ * 通配符或_all查询使用全局代数，任意写入都会递增；通过alias查询时需以alias调用{@link #bump(String)}
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Component
+public class IndexGenerations {
+
+    private static final String ALL = "_all";
+
+    private final ConcurrentHashMap<String, AtomicLong> generationMap = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final Set<String> delayedIndexSet = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean delayedScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "fever-index-generation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 写入后需等待周期刷新才可见时，延迟该时间再递增一次，应不小于index.refresh_interval
+     */
+    @Value("${elasticsearch.query.cache.refreshIntervalMillis:1000}")
+    private long refreshIntervalMillis;
+
+    public long get(@NonNull final String index) {
+        if (isPattern(index)) {
+            return globalGeneration.get();
+        }
+        AtomicLong generation = generationMap.get(index);
+        return null == generation ? 0 : generation.get();
+    }
+
+    /**
+     * @param indexArray index
+     * @return 各index当前代数
+     */
+    public long[] snapshot(@NonNull final String[] indexArray) {
+        long[] generationArray = new long[indexArray.length];
+        for (int i = 0; i < indexArray.length; i++) {
+            generationArray[i] = get(indexArray[i]);
+        }
+        return generationArray;
+    }
+
+    /**
+     * 写入已可见(同步refresh或wait_for)后调用
+     */
+    public void bump(@NonNull final String index) {
+        generationMap.computeIfAbsent(index, k -> new AtomicLong()).incrementAndGet();
+        globalGeneration.incrementAndGet();
+    }
+
+    public void bump(@NonNull final Collection<String> indices) {
+        indices.forEach(this::bump);
+    }
+
+    /**
+     * 写入需等待周期刷新才可见时调用：立即递增一次，刷新后再递增一次，避免刷新前的查询结果以新代数缓存；
+     * 同一刷新间隔内的延迟递增合并执行
+     */
+    public void bumpAfterRefresh(@NonNull final Collection<String> indices) {
+        bump(indices);
+        delayedIndexSet.addAll(indices);
+        if (delayedScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::drainDelayed, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private void drainDelayed() {
+        delayedScheduled.set(false);
+        for (String index : delayedIndexSet) {
+            delayedIndexSet.remove(index);
+            bump(index);
+        }
+    }
+
+    private static boolean isPattern(final String index) {
+        return ALL.equals(index) || index.contains("*") || index.contains(",");
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.github.fanfever.fever.query.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 查询结果缓存，key为(indices, types, query json, from, size)
+ * <p>
+ * 容量上限按LRU淘汰并带TTL；每个entry记录写入时各index的{@link IndexGenerations}代数，读取时代数不一致即丢弃
+ *
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@Component
+public class QueryCache {
+
+    @Autowired
+    private IndexGenerations indexGenerations;
+
+    @Value("${elasticsearch.query.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${elasticsearch.query.cache.maximumSize:10000}")
+    private long maximumSize;
+
+    @Value("${elasticsearch.query.cache.ttlMillis:10000}")
+    private long ttlMillis;
+
+    private Cache<Key, Entry> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param indexArray index
+     * @param typeArray  type
+     * @param query      查询json
+     * @param from       from
+     * @param size       size
+     * @param loader     未命中时执行查询
+     * @return 查询结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull String[] indexArray, String[] typeArray, @NonNull String query, int from, int size, @NonNull Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(Arrays.asList(indexArray), null == typeArray ? null : Arrays.asList(typeArray), query, from, size);
+        long[] generationArray = indexGenerations.snapshot(indexArray);
+        Entry entry = cache.getIfPresent(key);
+        if (null != entry) {
+            if (Arrays.equals(entry.generationArray, generationArray)) {
+                return (T) entry.value;
+            }
+            cache.invalidate(key);
+        }
+        T value = loader.get();
+        if (null != value) {
+            cache.put(key, new Entry(generationArray, value));
+        }
+        return value;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+        private final List<String> indexList;
+        private final List<String> typeList;
+        private final String query;
+        private final int from;
+        private final int size;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final long[] generationArray;
+        private final Object value;
+    }
+
+}
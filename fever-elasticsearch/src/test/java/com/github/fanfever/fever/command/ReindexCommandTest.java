@@ -0,0 +1,135 @@
+package com.github.fanfever.fever.command;
+
+import com.github.fanfever.fever.command.enums.ReindexState;
+import com.github.fanfever.fever.command.reindex.DualWriteWindow;
+import com.github.fanfever.fever.command.reindex.ReindexProgress;
+import com.github.fanfever.fever.command.request.Field;
+import com.github.fanfever.fever.command.request.IndexCommandRequest;
+import com.github.fanfever.fever.command.response.IndexCommandResult;
+import com.github.fanfever.fever.query.DocumentQuery;
+import com.github.fanfever.fever.query.cache.IndexGenerations;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequestBuilder;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.client.AdminClient;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ReindexCommandTest {
+
+    private static final List<Field> FIELD_LIST = Collections.emptyList();
+
+    @Mock
+    private Client elasticsearchClient;
+    @Mock
+    private IndexCommand indexCommand;
+    @Mock
+    private DocumentCommand documentCommand;
+    @Mock
+    private DocumentQuery documentQuery;
+    @Mock
+    private IndexGenerations indexGenerations;
+    @InjectMocks
+    private ReindexCommand reindexCommand;
+
+    /**
+     * 集群中已存在的index
+     */
+    private final Set<String> indexSet = ConcurrentHashMap.newKeySet();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        indexSet.add("user");
+        AdminClient adminClient = mock(AdminClient.class);
+        IndicesAdminClient indicesAdminClient = mock(IndicesAdminClient.class, RETURNS_DEEP_STUBS);
+        when(elasticsearchClient.admin()).thenReturn(adminClient);
+        when(adminClient.indices()).thenReturn(indicesAdminClient);
+
+        GetAliasesRequestBuilder getAliasesRequestBuilder = mock(GetAliasesRequestBuilder.class);
+        when(getAliasesRequestBuilder.get()).thenReturn(new GetAliasesResponse(ImmutableOpenMap.of()));
+        when(indicesAdminClient.prepareGetAliases(anyString())).thenReturn(getAliasesRequestBuilder);
+        when(indicesAdminClient.prepareExists(anyString())).thenAnswer(invocation -> {
+            String index = (String) invocation.getArguments()[0];
+            IndicesExistsRequestBuilder indicesExistsRequestBuilder = mock(IndicesExistsRequestBuilder.class);
+            when(indicesExistsRequestBuilder.get()).thenReturn(new IndicesExistsResponse(indexSet.contains(index)));
+            return indicesExistsRequestBuilder;
+        });
+
+        when(indexCommand.executeForResult(anyListOf(IndexCommandRequest.class), eq(ClusterHealthStatus.YELLOW))).thenAnswer(invocation -> {
+            List<IndexCommandRequest> indexCommandRequestList = (List<IndexCommandRequest>) invocation.getArguments()[0];
+            String failureMessage = indexSet.add(indexCommandRequestList.get(0).getIndex()) ? null : "index already exists";
+            return indexCommandRequestList.stream().map(i -> IndexCommandResult.of(i, failureMessage)).collect(Collectors.toList());
+        });
+        when(indexCommand.execute(any(IndexCommandRequest.class))).thenAnswer(invocation ->
+                indexSet.remove(((IndexCommandRequest) invocation.getArguments()[0]).getIndex()));
+
+        when(documentCommand.openDualWriteWindow("user")).thenAnswer(invocation -> new DualWriteWindow("user"));
+        // 复制前等待写入超时，使每次reindex在创建新index后失败
+        when(documentCommand.awaitWrites(anyLong())).thenReturn(false);
+    }
+
+    @Test
+    public void retryAfterFailedRunRecreatesTargetIndex() {
+        ReindexProgress first = reindexCommand.execute("user", "user", FIELD_LIST);
+
+        assertThat(first.getState()).isEqualTo(ReindexState.FAILED);
+        assertThat(first.getTargetIndex()).isEqualTo("user_v1");
+        assertThat(first.getFailureMessage()).contains("wait for pending writes timeout");
+        assertThat(indexSet).containsOnly("user");
+
+        ReindexProgress second = reindexCommand.execute("user", "user", FIELD_LIST);
+
+        assertThat(second.getState()).isEqualTo(ReindexState.FAILED);
+        assertThat(second.getTargetIndex()).isEqualTo("user_v1");
+        assertThat(second.getFailureMessage()).contains("wait for pending writes timeout");
+        assertThat(indexSet).containsOnly("user");
+        verify(indexCommand, times(2)).executeForResult(anyListOf(IndexCommandRequest.class), eq(ClusterHealthStatus.YELLOW));
+        verify(documentCommand, times(2)).removeDualWriteWindow(any(DualWriteWindow.class));
+    }
+
+    @Test
+    public void existingTargetIndexIsNotDeleted() {
+        indexSet.add("user_v1");
+
+        ReindexProgress reindexProgress = reindexCommand.execute("user", "user", FIELD_LIST);
+
+        assertThat(reindexProgress.getState()).isEqualTo(ReindexState.FAILED);
+        assertThat(reindexProgress.getFailureMessage()).contains("target index exists");
+        assertThat(indexSet).contains("user_v1");
+    }
+
+}
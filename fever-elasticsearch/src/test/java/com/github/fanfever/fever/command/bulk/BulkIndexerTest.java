@@ -0,0 +1,155 @@
+package com.github.fanfever.fever.command.bulk;
+
+import com.github.fanfever.fever.command.response.BulkItemResult;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkAction;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author fanfever
+ * @email fanfeveryahoo@gmail.com
+ * @url https://github.com/fanfever
+ */
+public class BulkIndexerTest {
+
+    private static final Consumer<BulkRequestBuilder> APPENDER = bulkRequestBuilder -> bulkRequestBuilder.add(
+            new IndexRequest("user", "user", "1").source(Collections.singletonMap("username", "fever")));
+
+    private Client client;
+    private BulkItemResponse successResponse;
+    private BulkItemResponse rejectedResponse;
+    /**
+     * 前rejections个bulk的所有item返回429
+     */
+    private AtomicInteger rejections;
+    private AtomicInteger bulks;
+    private BulkIndexer bulkIndexer;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        client = mock(Client.class);
+        successResponse = mock(BulkItemResponse.class);
+        when(successResponse.status()).thenReturn(RestStatus.CREATED);
+        rejectedResponse = mock(BulkItemResponse.class);
+        when(rejectedResponse.isFailed()).thenReturn(true);
+        when(rejectedResponse.getFailure()).thenReturn(new BulkItemResponse.Failure("user", "user", "1", new EsRejectedExecutionException("rejected")));
+        when(rejectedResponse.getFailureMessage()).thenReturn("rejected");
+        when(rejectedResponse.status()).thenReturn(RestStatus.TOO_MANY_REQUESTS);
+        rejections = new AtomicInteger();
+        bulks = new AtomicInteger();
+
+        when(client.prepareBulk()).thenAnswer(invocation -> new BulkRequestBuilder(client, BulkAction.INSTANCE));
+        doAnswer(invocation -> {
+            BulkRequest bulkRequest = (BulkRequest) invocation.getArguments()[1];
+            ActionListener<BulkResponse> listener = (ActionListener<BulkResponse>) invocation.getArguments()[2];
+            bulks.incrementAndGet();
+            BulkItemResponse[] bulkItemResponseArray = new BulkItemResponse[bulkRequest.numberOfActions()];
+            Arrays.fill(bulkItemResponseArray, rejections.getAndDecrement() > 0 ? rejectedResponse : successResponse);
+            listener.onResponse(new BulkResponse(bulkItemResponseArray, 1));
+            return null;
+        }).when(client).execute(eq(BulkAction.INSTANCE), any(BulkRequest.class), any(ActionListener.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (null != bulkIndexer) {
+            bulkIndexer.close();
+        }
+    }
+
+    @Test
+    public void rejectedItemIsRetried() throws Exception {
+        rejections.set(2);
+        bulkIndexer = new BulkIndexer(client, settings().setFlushIntervalMillis(10));
+
+        CompletableFuture<BulkItemResult> future = bulkIndexer.add(APPENDER);
+        bulkIndexer.flush();
+
+        BulkItemResult bulkItemResult = future.get(5, TimeUnit.SECONDS);
+        assertThat(bulkItemResult.isFailed()).isFalse();
+        assertThat(bulkItemResult.getRetries()).isEqualTo(2);
+        assertThat(bulks.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void retriesExhaustedCompletesAsFailed() throws Exception {
+        rejections.set(Integer.MAX_VALUE);
+        bulkIndexer = new BulkIndexer(client, settings().setFlushIntervalMillis(10).setMaxRetries(2));
+
+        CompletableFuture<BulkItemResult> future = bulkIndexer.add(APPENDER);
+        bulkIndexer.flush();
+
+        BulkItemResult bulkItemResult = future.get(5, TimeUnit.SECONDS);
+        assertThat(bulkItemResult.isFailed()).isTrue();
+        assertThat(bulkItemResult.getStatus()).isEqualTo(RestStatus.TOO_MANY_REQUESTS);
+        assertThat(bulkItemResult.getRetries()).isEqualTo(2);
+    }
+
+    @Test
+    public void closeRetriesItemsRejectedDuringFinalFlush() {
+        rejections.set(1);
+        bulkIndexer = new BulkIndexer(client, settings());
+
+        CompletableFuture<BulkItemResult> future = bulkIndexer.add(APPENDER);
+        bulkIndexer.close();
+
+        assertThat(future.isDone()).isTrue();
+        assertThat(future.join().isFailed()).isFalse();
+        assertThat(future.join().getRetries()).isEqualTo(1);
+    }
+
+    @Test
+    public void closeWaitsForItemsInBackoff() {
+        rejections.set(1);
+        bulkIndexer = new BulkIndexer(client, settings().setInitialBackoffMillis(200));
+
+        CompletableFuture<BulkItemResult> future = bulkIndexer.add(APPENDER);
+        bulkIndexer.flush();
+        assertThat(future.isDone()).isFalse();
+        bulkIndexer.close();
+
+        assertThat(future.isDone()).isTrue();
+        assertThat(future.join().isFailed()).isFalse();
+        assertThat(bulks.get()).isEqualTo(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addAfterCloseIsRejected() {
+        bulkIndexer = new BulkIndexer(client, settings());
+        bulkIndexer.close();
+        bulkIndexer.add(APPENDER);
+    }
+
+    /**
+     * 定时flush间隔足够大，只由测试显式flush/close触发发送
+     */
+    private static BulkSettings settings() {
+        return new BulkSettings().setFlushIntervalMillis(TimeUnit.MINUTES.toMillis(1)).setInitialBackoffMillis(10).setMaxBackoffMillis(200);
+    }
+
+}